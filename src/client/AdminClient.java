@@ -35,6 +35,7 @@ public class AdminClient {
             ShareMarket.Server server = ShareMarket.ServerHelper.narrow(ncRef.resolve_str(name));
 
             System.out.println("Connected to " + cityCode + " Server.");
+            ResultFormatter formatter = new ResultFormatter(serverName);
 
             while (true) {
                 System.out.println("\nAdmin Menu (" + cityCode + ")");
@@ -44,7 +45,8 @@ public class AdminClient {
                 System.out.println("4. Purchase Share (Buyer Function)");
                 System.out.println("5. View My Shares (Buyer Function)");
                 System.out.println("6. Sell Share (Buyer Function)");
-                System.out.println("7. Exit");
+                System.out.println("7. Find Shares by Date");
+                System.out.println("8. Exit");
                 System.out.print("Enter your choice: ");
                 int choice = scanner.nextInt();
 
@@ -58,7 +60,7 @@ public class AdminClient {
                         String shareType = scanner.next();
                         System.out.print("Enter Capacity: ");
                         int capacity = scanner.nextInt();
-                        response = server.addShare(shareID, shareType, capacity);
+                        response = formatter.addShare(server.addShare(shareID, shareType, capacity), shareID, shareType);
                         logAction(adminID, "addShare", response);
                         System.out.println(response);
                         break;
@@ -67,14 +69,14 @@ public class AdminClient {
                         shareID = scanner.next();
                         System.out.print("Enter Share Type: ");
                         shareType = scanner.next();
-                        response = server.removeShare(shareID, shareType);
+                        response = formatter.removeShare(server.removeShare(shareID, shareType), shareID, shareType);
                         logAction(adminID, "removeShare", response);
                         System.out.println(response);
                         break;
                     case 3:
                         System.out.print("Enter Share Type to list availability: ");
                         shareType = scanner.next();
-                        response = server.listShareAvailability(shareType);
+                        response = formatter.availability(server.listShareAvailability(shareType), shareType);
                         logAction(adminID, "listShareAvailability", response);
                         System.out.println(response);
                         break;
@@ -85,25 +87,39 @@ public class AdminClient {
                         shareType = scanner.next();
                         System.out.print("Enter Quantity: ");
                         int quantity = scanner.nextInt();
-                        response = server.purchaseShare(adminID, shareID, shareType, quantity);
+                        response = formatter.purchase(server.purchaseShare(adminID, shareID, shareType, quantity), shareID, shareType);
                         logAction(adminID, "purchaseShare", response);
                         System.out.println(response);
                         break;
                     case 5: // View Shares
-                        response = server.getShares(adminID);
+                        response = formatter.portfolio(server.getShares(adminID));
                         logAction(adminID, "getShares", response);
-                        System.out.println("Your Shares: " + response);
+                        System.out.println(response);
                         break;
                     case 6: // Sell Shares
                         System.out.print("Enter Share ID to sell: ");
                         shareID = scanner.next();
                         System.out.print("Enter Quantity: ");
                         quantity = scanner.nextInt();
-                        response = server.sellShare(adminID, shareID, quantity);
+                        response = formatter.sell(server.sellShare(adminID, shareID, quantity), shareID);
                         logAction(adminID, "sellShare", response);
                         System.out.println(response);
                         break;
                     case 7:
+                        System.out.print("Enter Share Type (Equity/Bonus/Dividend): ");
+                        shareType = scanner.next();
+                        System.out.print("Enter From Date (DDMMYY): ");
+                        String fromDate = scanner.next();
+                        System.out.print("Enter To Date (DDMMYY): ");
+                        String toDate = scanner.next();
+                        System.out.print("Enter Time Slot (M/A/E, or * for all): ");
+                        String timeSlot = scanner.next();
+                        response = formatter.sharesByDate(server.findSharesByDate(shareType, fromDate, toDate,
+                                timeSlot.equals("*") ? "" : timeSlot.toUpperCase()), shareType);
+                        logAction(adminID, "findSharesByDate", response);
+                        System.out.println(response);
+                        break;
+                    case 8:
                         System.out.println("Exiting Admin System.");
                         scanner.close();
                         return;
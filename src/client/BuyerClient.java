@@ -35,6 +35,7 @@ public class BuyerClient {
             ShareMarket.Server server = ShareMarket.ServerHelper.narrow(ncRef.resolve_str(name));
 
             System.out.println("Connected to " + serverName + " Server.");
+            ResultFormatter formatter = new ResultFormatter(serverName);
 
             while (true) {
                 System.out.println("\nBuyer Menu (" + serverName + ")");
@@ -49,7 +50,6 @@ public class BuyerClient {
                 int choice = scanner.nextInt();
 
                 String response;
-                String firstID;
                 switch (choice) {
                     case 1:
                         System.out.println("Example Share ID: LOCTDDMMYY (LOC: New York/T:Time/DDMMYY)");
@@ -59,7 +59,7 @@ public class BuyerClient {
                         String shareType = scanner.next();
                         System.out.print("Enter Quantity: ");
                         int quantity = scanner.nextInt();
-                        response = server.purchaseShare(buyerID, shareID, shareType, quantity);
+                        response = formatter.purchase(server.purchaseShare(buyerID, shareID, shareType, quantity), shareID, shareType);
                         logAction(buyerID, "purchaseShare", response);
                         System.out.println(response);
                         break;
@@ -74,9 +74,10 @@ public class BuyerClient {
                         quantity = scanner.nextInt();
                         System.out.print("Enter Target Market (NewYork/London/Tokyo): ");
                         String targetMarket = scanner.next();
-                        firstID = shareID.substring(0,1);
-                        if(firstID != null && firstID.equalsIgnoreCase(targetMarket.substring(0,1))){
-                            response = server.purchaseRemoteShare(buyerID, shareID, shareType, quantity, targetMarket);
+                        if(targetMarket.equalsIgnoreCase(ClientMap.getLocation(shareID))){
+                            response = formatter.purchase(
+                                    server.purchaseRemoteShare(buyerID, shareID, shareType, quantity, targetMarket),
+                                    shareID, shareType);
                             logAction(buyerID, "purchaseRemoteShare", response);
                             System.out.println(response);
                         }
@@ -85,7 +86,7 @@ public class BuyerClient {
                         }
                         break;
                     case 3:
-                        response = server.getShares(buyerID);
+                        response = formatter.portfolio(server.getShares(buyerID));
                         logAction(buyerID, "getShares", response);
                         System.out.println(response);
                         break;
@@ -95,7 +96,7 @@ public class BuyerClient {
                         shareID = scanner.next();
                         System.out.print("Enter Quantity: ");
                         quantity = scanner.nextInt();
-                        response = server.sellShare(buyerID, shareID, quantity);
+                        response = formatter.sell(server.sellShare(buyerID, shareID, quantity), shareID);
                         logAction(buyerID, "sellShare", response);
                         System.out.println(response);
                         break;
@@ -109,9 +110,9 @@ public class BuyerClient {
                         quantity = scanner.nextInt();
                         System.out.print("Enter Target Market (NewYork/London/Tokyo): ");
                         targetMarket = scanner.next();
-                        firstID = shareID.substring(0,1);
-                        if(firstID.equalsIgnoreCase(targetMarket.substring(0,1))){
-                            response = server.sellRemoteShare(buyerID, shareID, shareType, quantity, targetMarket);
+                        if(targetMarket.equalsIgnoreCase(ClientMap.getLocation(shareID))){
+                            response = formatter.sell(
+                                    server.sellRemoteShare(buyerID, shareID, shareType, quantity, targetMarket), shareID);
                             logAction(buyerID, "sellRemoteShare", response);
                             System.out.println(response);
                         }
@@ -130,7 +131,9 @@ public class BuyerClient {
                         System.out.print("Enter New Share Type (Equity/Bonus/Dividend): ");
                         String newShareType = scanner.next();
 
-                        response = server.swapShares(buyerID, oldShareID, oldShareType, newShareID, newShareType);
+                        response = formatter.swap(
+                                server.swapShares(buyerID, oldShareID, oldShareType, newShareID, newShareType),
+                                oldShareID, oldShareType, newShareID, newShareType);
                         logAction(buyerID, "swapShares", response);
                         System.out.println(response);
                         break;
@@ -0,0 +1,167 @@
+package client;
+
+import ShareMarket.Availability;
+import ShareMarket.Holding;
+import ShareMarket.ListingStatus;
+import ShareMarket.MarketAvailability;
+import ShareMarket.MarketHoldings;
+import ShareMarket.Result;
+import ShareMarket.ResultCode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns the typed replies of the share market servers into the messages
+ * shown to users and written to the client logs. Servers only send result
+ * codes and the figures the client cannot know from its own request; all
+ * wording lives here.
+ */
+public class ResultFormatter {
+    // Market the client is connected to; results from other markets are marked cross-server
+    private final String localMarket;
+
+    public ResultFormatter(String localMarket) {
+        this.localMarket = localMarket;
+    }
+
+    public String addShare(Result result, String shareID, String shareType) {
+        if (isSuccess(result)) {
+            return "Share added successfully: " + shareType + "-" + shareID;
+        }
+        return "Share not added. " + reason(result, shareID, shareType);
+    }
+
+    public String removeShare(Result result, String shareID, String shareType) {
+        if (isSuccess(result)) {
+            return "Share removed successfully.";
+        }
+        return "Share not removed. " + reason(result, shareID, shareType);
+    }
+
+    public String purchase(Result result, String shareID, String shareType) {
+        if (isSuccess(result)) {
+            return crossServer(result, "Purchase successful. You bought " + result.quantity + " of " +
+                    result.shareType + "-" + shareID);
+        }
+        return crossServer(result, "Purchase failed. " + reason(result, shareID, shareType));
+    }
+
+    public String sell(Result result, String shareID) {
+        if (isSuccess(result)) {
+            return crossServer(result, "Sell operation successful. Sold " + result.quantity + " of " +
+                    result.shareType + "-" + shareID);
+        }
+        return crossServer(result, "Sell failed. " + reason(result, shareID, result.shareType));
+    }
+
+    public String swap(Result result, String oldShareID, String oldShareType, String newShareID, String newShareType) {
+        if (isSuccess(result)) {
+            return crossServer(result, "Swap successful. Swapped " + result.quantity + " of " + oldShareType + "-" +
+                    oldShareID + " for " + result.quantity + " of " + newShareType + "-" + newShareID);
+        }
+        if (result.code.value() == ResultCode._PENDING) {
+            return "Swap pending. No reply from " + result.market +
+                    "; the swap will be completed or rolled back automatically.";
+        }
+        return crossServer(result, "Swap failed. " + reason(result, newShareID, newShareType));
+    }
+
+    public String portfolio(MarketHoldings[] portfolio) {
+        StringBuilder text = new StringBuilder("Your Shares:\n");
+        boolean hasShares = false;
+        for (MarketHoldings market : portfolio) {
+            if (market.holdings.length == 0) {
+                continue;
+            }
+            if (hasShares) {
+                text.append("\n"); // Add spacing between markets
+            }
+            text.append(market.market).append(" Market Shares:\n");
+            for (Holding holding : market.holdings) {
+                text.append("[Share: ").append(holding.shareType).append('-').append(holding.shareID)
+                        .append(", Owned: ").append(holding.quantity).append("]\n");
+            }
+            hasShares = true;
+        }
+        return hasShares ? text.toString() : "You do not own any shares in any market.";
+    }
+
+    public String availability(MarketAvailability[] report, String shareType) {
+        StringBuilder text = new StringBuilder();
+        List<String> unavailable = new ArrayList<>();
+        List<String> noResponse = new ArrayList<>();
+        List<String> incomplete = new ArrayList<>();
+        for (MarketAvailability market : report) {
+            for (Availability share : market.shares) {
+                text.append("[Share ID: ").append(share.shareID).append(", Type: ").append(shareType)
+                        .append(", Available: ").append(share.available)
+                        .append(", Market: ").append(market.market).append("]\n");
+            }
+            switch (market.status.value()) {
+                case ListingStatus._UNAVAILABLE:
+                    unavailable.add(market.market);
+                    break;
+                case ListingStatus._NO_RESPONSE:
+                    noResponse.add(market.market);
+                    break;
+                case ListingStatus._PARTIAL:
+                    incomplete.add(market.market);
+                    break;
+                default:
+            }
+        }
+        if (!unavailable.isEmpty()) {
+            text.append("[Partial result: ").append(String.join(", ", unavailable)).append(" currently unavailable]\n");
+        }
+        if (!noResponse.isEmpty()) {
+            text.append("[Partial result: no response from ").append(String.join(", ", noResponse)).append("]\n");
+        }
+        if (!incomplete.isEmpty()) {
+            text.append("[Partial result: listing from ").append(String.join(", ", incomplete))
+                    .append(" incomplete]\n");
+        }
+        return text.toString().trim();
+    }
+
+    public String sharesByDate(MarketAvailability market, String shareType) {
+        String text = availability(new MarketAvailability[]{market}, shareType);
+        return text.isEmpty() ? "No " + shareType + " shares found in " + market.market + " for these dates." : text;
+    }
+
+    private String crossServer(Result result, String text) {
+        if (result.market.isEmpty() || result.market.equalsIgnoreCase(localMarket)) {
+            return text;
+        }
+        return "Cross-server (" + result.market + "): " + text;
+    }
+
+    private static boolean isSuccess(Result result) {
+        return result.code.value() == ResultCode._SUCCESS;
+    }
+
+    private static String reason(Result result, String shareID, String shareType) {
+        switch (result.code.value()) {
+            case ResultCode._NOT_FOUND:
+                return "Share " + shareType + "-" + shareID + " not found in " + result.market + " market.";
+            case ResultCode._ALREADY_EXISTS:
+                return "Share already exists with ID " + shareID + " and Type " + shareType + ".";
+            case ResultCode._INVALID_SHARE_TYPE:
+                return "Invalid share type " + shareType + ".";
+            case ResultCode._NOT_ENOUGH_AVAILABLE:
+                return "Not enough shares available.";
+            case ResultCode._NOT_OWNED:
+                return "You do not own this share.";
+            case ResultCode._INSUFFICIENT_HOLDING:
+                return "You cannot sell more than you own.";
+            case ResultCode._TYPE_MISMATCH:
+                return "Share types must be the same.";
+            case ResultCode._UNKNOWN_MARKET:
+                return "No market for share ID " + shareID + ".";
+            case ResultCode._MARKET_UNAVAILABLE:
+                return result.market + " market is unavailable.";
+            default:
+                return result.detail;
+        }
+    }
+}
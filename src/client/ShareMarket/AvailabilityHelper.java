@@ -0,0 +1,82 @@
+package ShareMarket;
+
+
+/**
+* ShareMarket/AvailabilityHelper.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+abstract public class AvailabilityHelper
+{
+  private static String  _id = "IDL:ShareMarket/Availability:1.0";
+
+  public static void insert (org.omg.CORBA.Any a, ShareMarket.Availability that)
+  {
+    org.omg.CORBA.portable.OutputStream out = a.create_output_stream ();
+    a.type (type ());
+    write (out, that);
+    a.read_value (out.create_input_stream (), type ());
+  }
+
+  public static ShareMarket.Availability extract (org.omg.CORBA.Any a)
+  {
+    return read (a.create_input_stream ());
+  }
+
+  private static org.omg.CORBA.TypeCode __typeCode = null;
+  private static boolean __active = false;
+  synchronized public static org.omg.CORBA.TypeCode type ()
+  {
+    if (__typeCode == null)
+    {
+      synchronized (org.omg.CORBA.TypeCode.class)
+      {
+        if (__typeCode == null)
+        {
+          if (__active)
+          {
+            return org.omg.CORBA.ORB.init().create_recursive_tc ( _id );
+          }
+          __active = true;
+          org.omg.CORBA.StructMember[] _members0 = new org.omg.CORBA.StructMember [2];
+          org.omg.CORBA.TypeCode _tcOf_members0 = null;
+          _tcOf_members0 = org.omg.CORBA.ORB.init ().create_string_tc (0);
+          _members0[0] = new org.omg.CORBA.StructMember (
+            "shareID",
+            _tcOf_members0,
+            null);
+          _tcOf_members0 = org.omg.CORBA.ORB.init ().get_primitive_tc (org.omg.CORBA.TCKind.tk_long);
+          _members0[1] = new org.omg.CORBA.StructMember (
+            "available",
+            _tcOf_members0,
+            null);
+          __typeCode = org.omg.CORBA.ORB.init ().create_struct_tc (ShareMarket.AvailabilityHelper.id (), "Availability", _members0);
+          __active = false;
+        }
+      }
+    }
+    return __typeCode;
+  }
+
+  public static String id ()
+  {
+    return _id;
+  }
+
+  public static ShareMarket.Availability read (org.omg.CORBA.portable.InputStream istream)
+  {
+    ShareMarket.Availability value = new ShareMarket.Availability ();
+    value.shareID = istream.read_string ();
+    value.available = istream.read_long ();
+    return value;
+  }
+
+  public static void write (org.omg.CORBA.portable.OutputStream ostream, ShareMarket.Availability value)
+  {
+    ostream.write_string (value.shareID);
+    ostream.write_long (value.available);
+  }
+
+}
@@ -0,0 +1,39 @@
+package ShareMarket;
+
+
+/**
+* ShareMarket/AvailabilityListHolder.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+public final class AvailabilityListHolder implements org.omg.CORBA.portable.Streamable
+{
+  public ShareMarket.Availability value[] = null;
+
+  public AvailabilityListHolder ()
+  {
+  }
+
+  public AvailabilityListHolder (ShareMarket.Availability[] initialValue)
+  {
+    value = initialValue;
+  }
+
+  public void _read (org.omg.CORBA.portable.InputStream i)
+  {
+    value = ShareMarket.AvailabilityListHelper.read (i);
+  }
+
+  public void _write (org.omg.CORBA.portable.OutputStream o)
+  {
+    ShareMarket.AvailabilityListHelper.write (o, value);
+  }
+
+  public org.omg.CORBA.TypeCode _type ()
+  {
+    return ShareMarket.AvailabilityListHelper.type ();
+  }
+
+}
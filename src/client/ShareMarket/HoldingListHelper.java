@@ -0,0 +1,62 @@
+package ShareMarket;
+
+
+/**
+* ShareMarket/HoldingListHelper.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+abstract public class HoldingListHelper
+{
+  private static String  _id = "IDL:ShareMarket/HoldingList:1.0";
+
+  public static void insert (org.omg.CORBA.Any a, ShareMarket.Holding[] that)
+  {
+    org.omg.CORBA.portable.OutputStream out = a.create_output_stream ();
+    a.type (type ());
+    write (out, that);
+    a.read_value (out.create_input_stream (), type ());
+  }
+
+  public static ShareMarket.Holding[] extract (org.omg.CORBA.Any a)
+  {
+    return read (a.create_input_stream ());
+  }
+
+  private static org.omg.CORBA.TypeCode __typeCode = null;
+  synchronized public static org.omg.CORBA.TypeCode type ()
+  {
+    if (__typeCode == null)
+    {
+      __typeCode = ShareMarket.HoldingHelper.type ();
+      __typeCode = org.omg.CORBA.ORB.init ().create_sequence_tc (0, __typeCode);
+      __typeCode = org.omg.CORBA.ORB.init ().create_alias_tc (ShareMarket.HoldingListHelper.id (), "HoldingList", __typeCode);
+    }
+    return __typeCode;
+  }
+
+  public static String id ()
+  {
+    return _id;
+  }
+
+  public static ShareMarket.Holding[] read (org.omg.CORBA.portable.InputStream istream)
+  {
+    ShareMarket.Holding value[] = null;
+    int _len0 = istream.read_long ();
+    value = new ShareMarket.Holding[_len0];
+    for (int _o1 = 0;_o1 < value.length; ++_o1)
+      value[_o1] = ShareMarket.HoldingHelper.read (istream);
+    return value;
+  }
+
+  public static void write (org.omg.CORBA.portable.OutputStream ostream, ShareMarket.Holding[] value)
+  {
+    ostream.write_long (value.length);
+    for (int _i0 = 0;_i0 < value.length; ++_i0)
+      ShareMarket.HoldingHelper.write (ostream, value[_i0]);
+  }
+
+}
@@ -0,0 +1,84 @@
+package ShareMarket;
+
+
+/**
+* ShareMarket/MarketHoldingsHelper.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+abstract public class MarketHoldingsHelper
+{
+  private static String  _id = "IDL:ShareMarket/MarketHoldings:1.0";
+
+  public static void insert (org.omg.CORBA.Any a, ShareMarket.MarketHoldings that)
+  {
+    org.omg.CORBA.portable.OutputStream out = a.create_output_stream ();
+    a.type (type ());
+    write (out, that);
+    a.read_value (out.create_input_stream (), type ());
+  }
+
+  public static ShareMarket.MarketHoldings extract (org.omg.CORBA.Any a)
+  {
+    return read (a.create_input_stream ());
+  }
+
+  private static org.omg.CORBA.TypeCode __typeCode = null;
+  private static boolean __active = false;
+  synchronized public static org.omg.CORBA.TypeCode type ()
+  {
+    if (__typeCode == null)
+    {
+      synchronized (org.omg.CORBA.TypeCode.class)
+      {
+        if (__typeCode == null)
+        {
+          if (__active)
+          {
+            return org.omg.CORBA.ORB.init().create_recursive_tc ( _id );
+          }
+          __active = true;
+          org.omg.CORBA.StructMember[] _members0 = new org.omg.CORBA.StructMember [2];
+          org.omg.CORBA.TypeCode _tcOf_members0 = null;
+          _tcOf_members0 = org.omg.CORBA.ORB.init ().create_string_tc (0);
+          _members0[0] = new org.omg.CORBA.StructMember (
+            "market",
+            _tcOf_members0,
+            null);
+          _tcOf_members0 = ShareMarket.HoldingHelper.type ();
+          _tcOf_members0 = org.omg.CORBA.ORB.init ().create_sequence_tc (0, _tcOf_members0);
+          _tcOf_members0 = org.omg.CORBA.ORB.init ().create_alias_tc (ShareMarket.HoldingListHelper.id (), "HoldingList", _tcOf_members0);
+          _members0[1] = new org.omg.CORBA.StructMember (
+            "holdings",
+            _tcOf_members0,
+            null);
+          __typeCode = org.omg.CORBA.ORB.init ().create_struct_tc (ShareMarket.MarketHoldingsHelper.id (), "MarketHoldings", _members0);
+          __active = false;
+        }
+      }
+    }
+    return __typeCode;
+  }
+
+  public static String id ()
+  {
+    return _id;
+  }
+
+  public static ShareMarket.MarketHoldings read (org.omg.CORBA.portable.InputStream istream)
+  {
+    ShareMarket.MarketHoldings value = new ShareMarket.MarketHoldings ();
+    value.market = istream.read_string ();
+    value.holdings = ShareMarket.HoldingListHelper.read (istream);
+    return value;
+  }
+
+  public static void write (org.omg.CORBA.portable.OutputStream ostream, ShareMarket.MarketHoldings value)
+  {
+    ostream.write_string (value.market);
+    ShareMarket.HoldingListHelper.write (ostream, value.holdings);
+  }
+
+}
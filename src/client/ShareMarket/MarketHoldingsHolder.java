@@ -0,0 +1,38 @@
+package ShareMarket;
+
+/**
+* ShareMarket/MarketHoldingsHolder.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+public final class MarketHoldingsHolder implements org.omg.CORBA.portable.Streamable
+{
+  public ShareMarket.MarketHoldings value = null;
+
+  public MarketHoldingsHolder ()
+  {
+  }
+
+  public MarketHoldingsHolder (ShareMarket.MarketHoldings initialValue)
+  {
+    value = initialValue;
+  }
+
+  public void _read (org.omg.CORBA.portable.InputStream i)
+  {
+    value = ShareMarket.MarketHoldingsHelper.read (i);
+  }
+
+  public void _write (org.omg.CORBA.portable.OutputStream o)
+  {
+    ShareMarket.MarketHoldingsHelper.write (o, value);
+  }
+
+  public org.omg.CORBA.TypeCode _type ()
+  {
+    return ShareMarket.MarketHoldingsHelper.type ();
+  }
+
+}
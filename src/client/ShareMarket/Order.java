@@ -0,0 +1,28 @@
+package ShareMarket;
+
+
+/**
+* ShareMarket/Order.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+public final class Order implements org.omg.CORBA.portable.IDLEntity
+{
+  public String shareID = null;
+  public String shareType = null;
+  public int shareCount = (int)0;
+
+  public Order ()
+  {
+  } // ctor
+
+  public Order (String _shareID, String _shareType, int _shareCount)
+  {
+    shareID = _shareID;
+    shareType = _shareType;
+    shareCount = _shareCount;
+  } // ctor
+
+} // class Order
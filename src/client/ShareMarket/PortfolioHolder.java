@@ -0,0 +1,39 @@
+package ShareMarket;
+
+
+/**
+* ShareMarket/PortfolioHolder.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+public final class PortfolioHolder implements org.omg.CORBA.portable.Streamable
+{
+  public ShareMarket.MarketHoldings value[] = null;
+
+  public PortfolioHolder ()
+  {
+  }
+
+  public PortfolioHolder (ShareMarket.MarketHoldings[] initialValue)
+  {
+    value = initialValue;
+  }
+
+  public void _read (org.omg.CORBA.portable.InputStream i)
+  {
+    value = ShareMarket.PortfolioHelper.read (i);
+  }
+
+  public void _write (org.omg.CORBA.portable.OutputStream o)
+  {
+    ShareMarket.PortfolioHelper.write (o, value);
+  }
+
+  public org.omg.CORBA.TypeCode _type ()
+  {
+    return ShareMarket.PortfolioHelper.type ();
+  }
+
+}
@@ -0,0 +1,40 @@
+package ShareMarket;
+
+/**
+* ShareMarket/ResultCodeHolder.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+
+// Outcome of a request; clients turn it into text, servers only compare codes
+public final class ResultCodeHolder implements org.omg.CORBA.portable.Streamable
+{
+  public ShareMarket.ResultCode value = null;
+
+  public ResultCodeHolder ()
+  {
+  }
+
+  public ResultCodeHolder (ShareMarket.ResultCode initialValue)
+  {
+    value = initialValue;
+  }
+
+  public void _read (org.omg.CORBA.portable.InputStream i)
+  {
+    value = ShareMarket.ResultCodeHelper.read (i);
+  }
+
+  public void _write (org.omg.CORBA.portable.OutputStream o)
+  {
+    ShareMarket.ResultCodeHelper.write (o, value);
+  }
+
+  public org.omg.CORBA.TypeCode _type ()
+  {
+    return ShareMarket.ResultCodeHelper.type ();
+  }
+
+}
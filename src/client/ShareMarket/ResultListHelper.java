@@ -0,0 +1,62 @@
+package ShareMarket;
+
+
+/**
+* ShareMarket/ResultListHelper.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+abstract public class ResultListHelper
+{
+  private static String  _id = "IDL:ShareMarket/ResultList:1.0";
+
+  public static void insert (org.omg.CORBA.Any a, ShareMarket.Result[] that)
+  {
+    org.omg.CORBA.portable.OutputStream out = a.create_output_stream ();
+    a.type (type ());
+    write (out, that);
+    a.read_value (out.create_input_stream (), type ());
+  }
+
+  public static ShareMarket.Result[] extract (org.omg.CORBA.Any a)
+  {
+    return read (a.create_input_stream ());
+  }
+
+  private static org.omg.CORBA.TypeCode __typeCode = null;
+  synchronized public static org.omg.CORBA.TypeCode type ()
+  {
+    if (__typeCode == null)
+    {
+      __typeCode = ShareMarket.ResultHelper.type ();
+      __typeCode = org.omg.CORBA.ORB.init ().create_sequence_tc (0, __typeCode);
+      __typeCode = org.omg.CORBA.ORB.init ().create_alias_tc (ShareMarket.ResultListHelper.id (), "ResultList", __typeCode);
+    }
+    return __typeCode;
+  }
+
+  public static String id ()
+  {
+    return _id;
+  }
+
+  public static ShareMarket.Result[] read (org.omg.CORBA.portable.InputStream istream)
+  {
+    ShareMarket.Result value[] = null;
+    int _len0 = istream.read_long ();
+    value = new ShareMarket.Result[_len0];
+    for (int _o1 = 0;_o1 < value.length; ++_o1)
+      value[_o1] = ShareMarket.ResultHelper.read (istream);
+    return value;
+  }
+
+  public static void write (org.omg.CORBA.portable.OutputStream ostream, ShareMarket.Result[] value)
+  {
+    ostream.write_long (value.length);
+    for (int _i0 = 0;_i0 < value.length; ++_i0)
+      ShareMarket.ResultHelper.write (ostream, value[_i0]);
+  }
+
+}
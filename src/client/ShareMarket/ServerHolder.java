@@ -4,7 +4,7 @@ package ShareMarket;
 * ShareMarket/ServerHolder.java .
 * Generated by the IDL-to-Java compiler (portable), version "3.2"
 * from ShareMarket.idl
-* Saturday, March 1, 2025 12:55:31 AM EST
+* Sunday, October 18, 2026 2:47:15 AM UTC
 */
 
 public final class ServerHolder implements org.omg.CORBA.portable.Streamable
@@ -5,7 +5,7 @@ package ShareMarket;
 * ShareMarket/ServerPOA.java .
 * Generated by the IDL-to-Java compiler (portable), version "3.2"
 * from ShareMarket.idl
-* Saturday, March 1, 2025 12:55:31 AM EST
+* Sunday, October 18, 2026 3:21:03 AM UTC
 */
 
 public abstract class ServerPOA extends org.omg.PortableServer.Servant
@@ -20,12 +20,20 @@ public abstract class ServerPOA extends org.omg.PortableServer.Servant
     _methods.put ("addShare", new java.lang.Integer (0));
     _methods.put ("removeShare", new java.lang.Integer (1));
     _methods.put ("listShareAvailability", new java.lang.Integer (2));
-    _methods.put ("purchaseRemoteShare", new java.lang.Integer (3));
-    _methods.put ("sellRemoteShare", new java.lang.Integer (4));
-    _methods.put ("purchaseShare", new java.lang.Integer (5));
-    _methods.put ("getShares", new java.lang.Integer (6));
-    _methods.put ("sellShare", new java.lang.Integer (7));
-    _methods.put ("swapShares", new java.lang.Integer (8));
+    _methods.put ("findSharesByDate", new java.lang.Integer (3));
+    _methods.put ("purchaseRemoteShare", new java.lang.Integer (4));
+    _methods.put ("sellRemoteShare", new java.lang.Integer (5));
+    _methods.put ("purchaseShare", new java.lang.Integer (6));
+    _methods.put ("getShares", new java.lang.Integer (7));
+    _methods.put ("getLocalHoldings", new java.lang.Integer (8));
+    _methods.put ("sellShare", new java.lang.Integer (9));
+    _methods.put ("swapShares", new java.lang.Integer (10));
+    _methods.put ("purchaseShareOnce", new java.lang.Integer (11));
+    _methods.put ("sellShareOnce", new java.lang.Integer (12));
+    _methods.put ("purchaseShares", new java.lang.Integer (13));
+    _methods.put ("sellShares", new java.lang.Integer (14));
+    _methods.put ("purchaseSharesOnce", new java.lang.Integer (15));
+    _methods.put ("sellSharesOnce", new java.lang.Integer (16));
   }
 
   public org.omg.CORBA.portable.OutputStream _invoke (String $method,
@@ -46,10 +54,10 @@ public abstract class ServerPOA extends org.omg.PortableServer.Servant
          String shareID = in.read_string ();
          String shareType = in.read_string ();
          int capacity = in.read_long ();
-         String $result = null;
+         ShareMarket.Result $result = null;
          $result = this.addShare (shareID, shareType, capacity);
          out = $rh.createReply();
-         out.write_string ($result);
+         ShareMarket.ResultHelper.write (out, $result);
          break;
        }
 
@@ -57,99 +65,205 @@ public abstract class ServerPOA extends org.omg.PortableServer.Servant
        {
          String shareID = in.read_string ();
          String shareType = in.read_string ();
-         String $result = null;
+         ShareMarket.Result $result = null;
          $result = this.removeShare (shareID, shareType);
          out = $rh.createReply();
-         out.write_string ($result);
+         ShareMarket.ResultHelper.write (out, $result);
          break;
        }
 
        case 2:  // ShareMarket/Server/listShareAvailability
        {
          String shareType = in.read_string ();
-         String $result = null;
+         ShareMarket.MarketAvailability $result[] = null;
          $result = this.listShareAvailability (shareType);
          out = $rh.createReply();
-         out.write_string ($result);
+         ShareMarket.AvailabilityReportHelper.write (out, $result);
          break;
        }
 
-       case 3:  // ShareMarket/Server/purchaseRemoteShare
+
+  // and time-slot order; timeSlot is M, A or E, or empty for all slots
+       case 3:  // ShareMarket/Server/findSharesByDate
+       {
+         String shareType = in.read_string ();
+         String fromDate = in.read_string ();
+         String toDate = in.read_string ();
+         String timeSlot = in.read_string ();
+         ShareMarket.MarketAvailability $result = null;
+         $result = this.findSharesByDate (shareType, fromDate, toDate, timeSlot);
+         out = $rh.createReply();
+         ShareMarket.MarketAvailabilityHelper.write (out, $result);
+         break;
+       }
+
+       case 4:  // ShareMarket/Server/purchaseRemoteShare
        {
          String buyerID = in.read_string ();
          String shareID = in.read_string ();
          String shareType = in.read_string ();
          int shareCount = in.read_long ();
          String targetMarket = in.read_string ();
-         String $result = null;
+         ShareMarket.Result $result = null;
          $result = this.purchaseRemoteShare (buyerID, shareID, shareType, shareCount, targetMarket);
          out = $rh.createReply();
-         out.write_string ($result);
+         ShareMarket.ResultHelper.write (out, $result);
          break;
        }
 
-       case 4:  // ShareMarket/Server/sellRemoteShare
+       case 5:  // ShareMarket/Server/sellRemoteShare
        {
          String buyerID = in.read_string ();
          String shareID = in.read_string ();
          String shareType = in.read_string ();
          int shareCount = in.read_long ();
          String targetMarket = in.read_string ();
-         String $result = null;
+         ShareMarket.Result $result = null;
          $result = this.sellRemoteShare (buyerID, shareID, shareType, shareCount, targetMarket);
          out = $rh.createReply();
-         out.write_string ($result);
+         ShareMarket.ResultHelper.write (out, $result);
          break;
        }
 
 
   // Buyer Operations
-       case 5:  // ShareMarket/Server/purchaseShare
+       case 6:  // ShareMarket/Server/purchaseShare
        {
          String buyerID = in.read_string ();
          String shareID = in.read_string ();
          String shareType = in.read_string ();
          int shareCount = in.read_long ();
-         String $result = null;
+         ShareMarket.Result $result = null;
          $result = this.purchaseShare (buyerID, shareID, shareType, shareCount);
          out = $rh.createReply();
-         out.write_string ($result);
+         ShareMarket.ResultHelper.write (out, $result);
          break;
        }
 
-       case 6:  // ShareMarket/Server/getShares
+       case 7:  // ShareMarket/Server/getShares
        {
          String buyerID = in.read_string ();
-         String $result = null;
+         ShareMarket.MarketHoldings $result[] = null;
          $result = this.getShares (buyerID);
          out = $rh.createReply();
-         out.write_string ($result);
+         ShareMarket.PortfolioHelper.write (out, $result);
          break;
        }
 
-       case 7:  // ShareMarket/Server/sellShare
+
+  // Server-to-server part of getShares: the buyer's holdings in this market only
+       case 8:  // ShareMarket/Server/getLocalHoldings
+       {
+         String buyerID = in.read_string ();
+         ShareMarket.MarketHoldings $result = null;
+         $result = this.getLocalHoldings (buyerID);
+         out = $rh.createReply();
+         ShareMarket.MarketHoldingsHelper.write (out, $result);
+         break;
+       }
+
+       case 9:  // ShareMarket/Server/sellShare
        {
          String buyerID = in.read_string ();
          String shareID = in.read_string ();
          int shareCount = in.read_long ();
-         String $result = null;
+         ShareMarket.Result $result = null;
          $result = this.sellShare (buyerID, shareID, shareCount);
          out = $rh.createReply();
-         out.write_string ($result);
+         ShareMarket.ResultHelper.write (out, $result);
          break;
        }
 
-       case 8:  // ShareMarket/Server/swapShares
+       case 10:  // ShareMarket/Server/swapShares
        {
          String buyerID = in.read_string ();
          String oldShareID = in.read_string ();
          String oldShareType = in.read_string ();
          String newShareID = in.read_string ();
          String newShareType = in.read_string ();
-         String $result = null;
+         ShareMarket.Result $result = null;
          $result = this.swapShares (buyerID, oldShareID, oldShareType, newShareID, newShareType);
          out = $rh.createReply();
-         out.write_string ($result);
+         ShareMarket.ResultHelper.write (out, $result);
+         break;
+       }
+
+
+  // Cross-market purchase and sell; a resent requestID gets the first result back
+       case 11:  // ShareMarket/Server/purchaseShareOnce
+       {
+         String requestID = in.read_string ();
+         String buyerID = in.read_string ();
+         String shareID = in.read_string ();
+         String shareType = in.read_string ();
+         int shareCount = in.read_long ();
+         ShareMarket.Result $result = null;
+         $result = this.purchaseShareOnce (requestID, buyerID, shareID, shareType, shareCount);
+         out = $rh.createReply();
+         ShareMarket.ResultHelper.write (out, $result);
+         break;
+       }
+
+       case 12:  // ShareMarket/Server/sellShareOnce
+       {
+         String requestID = in.read_string ();
+         String buyerID = in.read_string ();
+         String shareID = in.read_string ();
+         int shareCount = in.read_long ();
+         ShareMarket.Result $result = null;
+         $result = this.sellShareOnce (requestID, buyerID, shareID, shareCount);
+         out = $rh.createReply();
+         ShareMarket.ResultHelper.write (out, $result);
+         break;
+       }
+
+
+  // Batches; one result per order, in order
+       case 13:  // ShareMarket/Server/purchaseShares
+       {
+         String buyerID = in.read_string ();
+         ShareMarket.Order orders[] = ShareMarket.OrderListHelper.read (in);
+         ShareMarket.Result $result[] = null;
+         $result = this.purchaseShares (buyerID, orders);
+         out = $rh.createReply();
+         ShareMarket.ResultListHelper.write (out, $result);
+         break;
+       }
+
+       case 14:  // ShareMarket/Server/sellShares
+       {
+         String buyerID = in.read_string ();
+         ShareMarket.Order orders[] = ShareMarket.OrderListHelper.read (in);
+         ShareMarket.Result $result[] = null;
+         $result = this.sellShares (buyerID, orders);
+         out = $rh.createReply();
+         ShareMarket.ResultListHelper.write (out, $result);
+         break;
+       }
+
+
+  // Cross-market legs of a batch; a resent requestID gets the first results back
+       case 15:  // ShareMarket/Server/purchaseSharesOnce
+       {
+         String requestID = in.read_string ();
+         String buyerID = in.read_string ();
+         ShareMarket.Order orders[] = ShareMarket.OrderListHelper.read (in);
+         ShareMarket.Result $result[] = null;
+         $result = this.purchaseSharesOnce (requestID, buyerID, orders);
+         out = $rh.createReply();
+         ShareMarket.ResultListHelper.write (out, $result);
+         break;
+       }
+
+       case 16:  // ShareMarket/Server/sellSharesOnce
+       {
+         String requestID = in.read_string ();
+         String buyerID = in.read_string ();
+         ShareMarket.Order orders[] = ShareMarket.OrderListHelper.read (in);
+         ShareMarket.Result $result[] = null;
+         $result = this.sellSharesOnce (requestID, buyerID, orders);
+         out = $rh.createReply();
+         ShareMarket.ResultListHelper.write (out, $result);
          break;
        }
 
@@ -169,15 +283,15 @@ public abstract class ServerPOA extends org.omg.PortableServer.Servant
     return (String[])__ids.clone ();
   }
 
-  public ShareMarket.Server _this()
+  public Server _this() 
   {
-    return ShareMarket.ServerHelper.narrow(
+    return ServerHelper.narrow(
     super._this_object());
   }
 
-  public ShareMarket.Server _this(org.omg.CORBA.ORB orb)
+  public Server _this(org.omg.CORBA.ORB orb) 
   {
-    return ShareMarket.ServerHelper.narrow(
+    return ServerHelper.narrow(
     super._this_object(orb));
   }
 
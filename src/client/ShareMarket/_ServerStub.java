@@ -5,7 +5,7 @@ package ShareMarket;
 * ShareMarket/_ServerStub.java .
 * Generated by the IDL-to-Java compiler (portable), version "3.2"
 * from ShareMarket.idl
-* Saturday, March 1, 2025 12:55:31 AM EST
+* Sunday, October 18, 2026 3:21:03 AM UTC
 */
 
 public class _ServerStub extends org.omg.CORBA.portable.ObjectImpl implements ShareMarket.Server
@@ -13,7 +13,7 @@ public class _ServerStub extends org.omg.CORBA.portable.ObjectImpl implements Sh
 
 
   // Admin Operations
-  public String addShare (String shareID, String shareType, int capacity)
+  public ShareMarket.Result addShare (String shareID, String shareType, int capacity)
   {
             org.omg.CORBA.portable.InputStream $in = null;
             try {
@@ -22,7 +22,7 @@ public class _ServerStub extends org.omg.CORBA.portable.ObjectImpl implements Sh
                 $out.write_string (shareType);
                 $out.write_long (capacity);
                 $in = _invoke ($out);
-                String $result = $in.read_string ();
+                ShareMarket.Result $result = ShareMarket.ResultHelper.read ($in);
                 return $result;
             } catch (org.omg.CORBA.portable.ApplicationException $ex) {
                 $in = $ex.getInputStream ();
@@ -35,7 +35,7 @@ public class _ServerStub extends org.omg.CORBA.portable.ObjectImpl implements Sh
             }
   } // addShare
 
-  public String removeShare (String shareID, String shareType)
+  public ShareMarket.Result removeShare (String shareID, String shareType)
   {
             org.omg.CORBA.portable.InputStream $in = null;
             try {
@@ -43,7 +43,7 @@ public class _ServerStub extends org.omg.CORBA.portable.ObjectImpl implements Sh
                 $out.write_string (shareID);
                 $out.write_string (shareType);
                 $in = _invoke ($out);
-                String $result = $in.read_string ();
+                ShareMarket.Result $result = ShareMarket.ResultHelper.read ($in);
                 return $result;
             } catch (org.omg.CORBA.portable.ApplicationException $ex) {
                 $in = $ex.getInputStream ();
@@ -56,14 +56,14 @@ public class _ServerStub extends org.omg.CORBA.portable.ObjectImpl implements Sh
             }
   } // removeShare
 
-  public String listShareAvailability (String shareType)
+  public ShareMarket.MarketAvailability[] listShareAvailability (String shareType)
   {
             org.omg.CORBA.portable.InputStream $in = null;
             try {
                 org.omg.CORBA.portable.OutputStream $out = _request ("listShareAvailability", true);
                 $out.write_string (shareType);
                 $in = _invoke ($out);
-                String $result = $in.read_string ();
+                ShareMarket.MarketAvailability $result[] = ShareMarket.AvailabilityReportHelper.read ($in);
                 return $result;
             } catch (org.omg.CORBA.portable.ApplicationException $ex) {
                 $in = $ex.getInputStream ();
@@ -76,7 +76,32 @@ public class _ServerStub extends org.omg.CORBA.portable.ObjectImpl implements Sh
             }
   } // listShareAvailability
 
-  public String purchaseRemoteShare (String buyerID, String shareID, String shareType, int shareCount, String targetMarket)
+
+  // and time-slot order; timeSlot is M, A or E, or empty for all slots
+  public ShareMarket.MarketAvailability findSharesByDate (String shareType, String fromDate, String toDate, String timeSlot)
+  {
+            org.omg.CORBA.portable.InputStream $in = null;
+            try {
+                org.omg.CORBA.portable.OutputStream $out = _request ("findSharesByDate", true);
+                $out.write_string (shareType);
+                $out.write_string (fromDate);
+                $out.write_string (toDate);
+                $out.write_string (timeSlot);
+                $in = _invoke ($out);
+                ShareMarket.MarketAvailability $result = ShareMarket.MarketAvailabilityHelper.read ($in);
+                return $result;
+            } catch (org.omg.CORBA.portable.ApplicationException $ex) {
+                $in = $ex.getInputStream ();
+                String _id = $ex.getId ();
+                throw new org.omg.CORBA.MARSHAL (_id);
+            } catch (org.omg.CORBA.portable.RemarshalException $rm) {
+                return findSharesByDate (shareType, fromDate, toDate, timeSlot        );
+            } finally {
+                _releaseReply ($in);
+            }
+  } // findSharesByDate
+
+  public ShareMarket.Result purchaseRemoteShare (String buyerID, String shareID, String shareType, int shareCount, String targetMarket)
   {
             org.omg.CORBA.portable.InputStream $in = null;
             try {
@@ -87,7 +112,7 @@ public class _ServerStub extends org.omg.CORBA.portable.ObjectImpl implements Sh
                 $out.write_long (shareCount);
                 $out.write_string (targetMarket);
                 $in = _invoke ($out);
-                String $result = $in.read_string ();
+                ShareMarket.Result $result = ShareMarket.ResultHelper.read ($in);
                 return $result;
             } catch (org.omg.CORBA.portable.ApplicationException $ex) {
                 $in = $ex.getInputStream ();
@@ -100,7 +125,7 @@ public class _ServerStub extends org.omg.CORBA.portable.ObjectImpl implements Sh
             }
   } // purchaseRemoteShare
 
-  public String sellRemoteShare (String buyerID, String shareID, String shareType, int shareCount, String targetMarket)
+  public ShareMarket.Result sellRemoteShare (String buyerID, String shareID, String shareType, int shareCount, String targetMarket)
   {
             org.omg.CORBA.portable.InputStream $in = null;
             try {
@@ -111,7 +136,7 @@ public class _ServerStub extends org.omg.CORBA.portable.ObjectImpl implements Sh
                 $out.write_long (shareCount);
                 $out.write_string (targetMarket);
                 $in = _invoke ($out);
-                String $result = $in.read_string ();
+                ShareMarket.Result $result = ShareMarket.ResultHelper.read ($in);
                 return $result;
             } catch (org.omg.CORBA.portable.ApplicationException $ex) {
                 $in = $ex.getInputStream ();
@@ -126,7 +151,7 @@ public class _ServerStub extends org.omg.CORBA.portable.ObjectImpl implements Sh
 
 
   // Buyer Operations
-  public String purchaseShare (String buyerID, String shareID, String shareType, int shareCount)
+  public ShareMarket.Result purchaseShare (String buyerID, String shareID, String shareType, int shareCount)
   {
             org.omg.CORBA.portable.InputStream $in = null;
             try {
@@ -136,7 +161,7 @@ public class _ServerStub extends org.omg.CORBA.portable.ObjectImpl implements Sh
                 $out.write_string (shareType);
                 $out.write_long (shareCount);
                 $in = _invoke ($out);
-                String $result = $in.read_string ();
+                ShareMarket.Result $result = ShareMarket.ResultHelper.read ($in);
                 return $result;
             } catch (org.omg.CORBA.portable.ApplicationException $ex) {
                 $in = $ex.getInputStream ();
@@ -149,14 +174,14 @@ public class _ServerStub extends org.omg.CORBA.portable.ObjectImpl implements Sh
             }
   } // purchaseShare
 
-  public String getShares (String buyerID)
+  public ShareMarket.MarketHoldings[] getShares (String buyerID)
   {
             org.omg.CORBA.portable.InputStream $in = null;
             try {
                 org.omg.CORBA.portable.OutputStream $out = _request ("getShares", true);
                 $out.write_string (buyerID);
                 $in = _invoke ($out);
-                String $result = $in.read_string ();
+                ShareMarket.MarketHoldings $result[] = ShareMarket.PortfolioHelper.read ($in);
                 return $result;
             } catch (org.omg.CORBA.portable.ApplicationException $ex) {
                 $in = $ex.getInputStream ();
@@ -169,7 +194,29 @@ public class _ServerStub extends org.omg.CORBA.portable.ObjectImpl implements Sh
             }
   } // getShares
 
-  public String sellShare (String buyerID, String shareID, int shareCount)
+
+  // Server-to-server part of getShares: the buyer's holdings in this market only
+  public ShareMarket.MarketHoldings getLocalHoldings (String buyerID)
+  {
+            org.omg.CORBA.portable.InputStream $in = null;
+            try {
+                org.omg.CORBA.portable.OutputStream $out = _request ("getLocalHoldings", true);
+                $out.write_string (buyerID);
+                $in = _invoke ($out);
+                ShareMarket.MarketHoldings $result = ShareMarket.MarketHoldingsHelper.read ($in);
+                return $result;
+            } catch (org.omg.CORBA.portable.ApplicationException $ex) {
+                $in = $ex.getInputStream ();
+                String _id = $ex.getId ();
+                throw new org.omg.CORBA.MARSHAL (_id);
+            } catch (org.omg.CORBA.portable.RemarshalException $rm) {
+                return getLocalHoldings (buyerID        );
+            } finally {
+                _releaseReply ($in);
+            }
+  } // getLocalHoldings
+
+  public ShareMarket.Result sellShare (String buyerID, String shareID, int shareCount)
   {
             org.omg.CORBA.portable.InputStream $in = null;
             try {
@@ -178,7 +225,7 @@ public class _ServerStub extends org.omg.CORBA.portable.ObjectImpl implements Sh
                 $out.write_string (shareID);
                 $out.write_long (shareCount);
                 $in = _invoke ($out);
-                String $result = $in.read_string ();
+                ShareMarket.Result $result = ShareMarket.ResultHelper.read ($in);
                 return $result;
             } catch (org.omg.CORBA.portable.ApplicationException $ex) {
                 $in = $ex.getInputStream ();
@@ -191,7 +238,7 @@ public class _ServerStub extends org.omg.CORBA.portable.ObjectImpl implements Sh
             }
   } // sellShare
 
-  public String swapShares (String buyerID, String oldShareID, String oldShareType, String newShareID, String newShareType)
+  public ShareMarket.Result swapShares (String buyerID, String oldShareID, String oldShareType, String newShareID, String newShareType)
   {
             org.omg.CORBA.portable.InputStream $in = null;
             try {
@@ -202,7 +249,7 @@ public class _ServerStub extends org.omg.CORBA.portable.ObjectImpl implements Sh
                 $out.write_string (newShareID);
                 $out.write_string (newShareType);
                 $in = _invoke ($out);
-                String $result = $in.read_string ();
+                ShareMarket.Result $result = ShareMarket.ResultHelper.read ($in);
                 return $result;
             } catch (org.omg.CORBA.portable.ApplicationException $ex) {
                 $in = $ex.getInputStream ();
@@ -215,6 +262,145 @@ public class _ServerStub extends org.omg.CORBA.portable.ObjectImpl implements Sh
             }
   } // swapShares
 
+
+  // Cross-market purchase and sell; a resent requestID gets the first result back
+  public ShareMarket.Result purchaseShareOnce (String requestID, String buyerID, String shareID, String shareType, int shareCount)
+  {
+            org.omg.CORBA.portable.InputStream $in = null;
+            try {
+                org.omg.CORBA.portable.OutputStream $out = _request ("purchaseShareOnce", true);
+                $out.write_string (requestID);
+                $out.write_string (buyerID);
+                $out.write_string (shareID);
+                $out.write_string (shareType);
+                $out.write_long (shareCount);
+                $in = _invoke ($out);
+                ShareMarket.Result $result = ShareMarket.ResultHelper.read ($in);
+                return $result;
+            } catch (org.omg.CORBA.portable.ApplicationException $ex) {
+                $in = $ex.getInputStream ();
+                String _id = $ex.getId ();
+                throw new org.omg.CORBA.MARSHAL (_id);
+            } catch (org.omg.CORBA.portable.RemarshalException $rm) {
+                return purchaseShareOnce (requestID, buyerID, shareID, shareType, shareCount        );
+            } finally {
+                _releaseReply ($in);
+            }
+  } // purchaseShareOnce
+
+  public ShareMarket.Result sellShareOnce (String requestID, String buyerID, String shareID, int shareCount)
+  {
+            org.omg.CORBA.portable.InputStream $in = null;
+            try {
+                org.omg.CORBA.portable.OutputStream $out = _request ("sellShareOnce", true);
+                $out.write_string (requestID);
+                $out.write_string (buyerID);
+                $out.write_string (shareID);
+                $out.write_long (shareCount);
+                $in = _invoke ($out);
+                ShareMarket.Result $result = ShareMarket.ResultHelper.read ($in);
+                return $result;
+            } catch (org.omg.CORBA.portable.ApplicationException $ex) {
+                $in = $ex.getInputStream ();
+                String _id = $ex.getId ();
+                throw new org.omg.CORBA.MARSHAL (_id);
+            } catch (org.omg.CORBA.portable.RemarshalException $rm) {
+                return sellShareOnce (requestID, buyerID, shareID, shareCount        );
+            } finally {
+                _releaseReply ($in);
+            }
+  } // sellShareOnce
+
+
+  // Batches; one result per order, in order
+  public ShareMarket.Result[] purchaseShares (String buyerID, ShareMarket.Order[] orders)
+  {
+            org.omg.CORBA.portable.InputStream $in = null;
+            try {
+                org.omg.CORBA.portable.OutputStream $out = _request ("purchaseShares", true);
+                $out.write_string (buyerID);
+                ShareMarket.OrderListHelper.write ($out, orders);
+                $in = _invoke ($out);
+                ShareMarket.Result $result[] = ShareMarket.ResultListHelper.read ($in);
+                return $result;
+            } catch (org.omg.CORBA.portable.ApplicationException $ex) {
+                $in = $ex.getInputStream ();
+                String _id = $ex.getId ();
+                throw new org.omg.CORBA.MARSHAL (_id);
+            } catch (org.omg.CORBA.portable.RemarshalException $rm) {
+                return purchaseShares (buyerID, orders        );
+            } finally {
+                _releaseReply ($in);
+            }
+  } // purchaseShares
+
+  public ShareMarket.Result[] sellShares (String buyerID, ShareMarket.Order[] orders)
+  {
+            org.omg.CORBA.portable.InputStream $in = null;
+            try {
+                org.omg.CORBA.portable.OutputStream $out = _request ("sellShares", true);
+                $out.write_string (buyerID);
+                ShareMarket.OrderListHelper.write ($out, orders);
+                $in = _invoke ($out);
+                ShareMarket.Result $result[] = ShareMarket.ResultListHelper.read ($in);
+                return $result;
+            } catch (org.omg.CORBA.portable.ApplicationException $ex) {
+                $in = $ex.getInputStream ();
+                String _id = $ex.getId ();
+                throw new org.omg.CORBA.MARSHAL (_id);
+            } catch (org.omg.CORBA.portable.RemarshalException $rm) {
+                return sellShares (buyerID, orders        );
+            } finally {
+                _releaseReply ($in);
+            }
+  } // sellShares
+
+
+  // Cross-market legs of a batch; a resent requestID gets the first results back
+  public ShareMarket.Result[] purchaseSharesOnce (String requestID, String buyerID, ShareMarket.Order[] orders)
+  {
+            org.omg.CORBA.portable.InputStream $in = null;
+            try {
+                org.omg.CORBA.portable.OutputStream $out = _request ("purchaseSharesOnce", true);
+                $out.write_string (requestID);
+                $out.write_string (buyerID);
+                ShareMarket.OrderListHelper.write ($out, orders);
+                $in = _invoke ($out);
+                ShareMarket.Result $result[] = ShareMarket.ResultListHelper.read ($in);
+                return $result;
+            } catch (org.omg.CORBA.portable.ApplicationException $ex) {
+                $in = $ex.getInputStream ();
+                String _id = $ex.getId ();
+                throw new org.omg.CORBA.MARSHAL (_id);
+            } catch (org.omg.CORBA.portable.RemarshalException $rm) {
+                return purchaseSharesOnce (requestID, buyerID, orders        );
+            } finally {
+                _releaseReply ($in);
+            }
+  } // purchaseSharesOnce
+
+  public ShareMarket.Result[] sellSharesOnce (String requestID, String buyerID, ShareMarket.Order[] orders)
+  {
+            org.omg.CORBA.portable.InputStream $in = null;
+            try {
+                org.omg.CORBA.portable.OutputStream $out = _request ("sellSharesOnce", true);
+                $out.write_string (requestID);
+                $out.write_string (buyerID);
+                ShareMarket.OrderListHelper.write ($out, orders);
+                $in = _invoke ($out);
+                ShareMarket.Result $result[] = ShareMarket.ResultListHelper.read ($in);
+                return $result;
+            } catch (org.omg.CORBA.portable.ApplicationException $ex) {
+                $in = $ex.getInputStream ();
+                String _id = $ex.getId ();
+                throw new org.omg.CORBA.MARSHAL (_id);
+            } catch (org.omg.CORBA.portable.RemarshalException $rm) {
+                return sellSharesOnce (requestID, buyerID, orders        );
+            } finally {
+                _releaseReply ($in);
+            }
+  } // sellSharesOnce
+
   // Type-specific CORBA::Object operations
   private static String[] __ids = {
     "IDL:ShareMarket/Server:1.0"};
@@ -227,6 +413,7 @@ public class _ServerStub extends org.omg.CORBA.portable.ObjectImpl implements Sh
   private void readObject (java.io.ObjectInputStream s) throws java.io.IOException
   {
      String str = s.readUTF ();
+     com.sun.corba.se.impl.orbutil.IORCheckImpl.check(str, "ShareMarket._ServerStub");
      String[] args = null;
      java.util.Properties props = null;
      org.omg.CORBA.ORB orb = org.omg.CORBA.ORB.init (args, props);
@@ -0,0 +1,289 @@
+package server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous writer for the per-market audit log (logs/&lt;city&gt;_Server.log).
+ *
+ * Request threads publish records into a bounded lock-free ring buffer and
+ * return immediately; one writer thread formats them, batches the bytes and
+ * writes them to a single FileChannel once {@link #FLUSH_BYTES} are pending
+ * or {@link #FLUSH_INTERVAL_MS} have passed. Records logged as durable make
+ * the caller wait until they have been written and fsynced.
+ *
+ * When the ring is full, producers wait for the writer instead of dropping
+ * audit records. If the log file cannot be opened or written, the log
+ * fails over to stderr for good: records are printed there, durable
+ * callers get the error right away, and nobody waits for the dead file.
+ */
+public class AuditLog {
+    private static final int DEFAULT_CAPACITY = 1 << 14;
+    private static final int FLUSH_BYTES = 64 * 1024;
+    private static final long FLUSH_INTERVAL_MS = 200;
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final class Record {
+        final long timestamp;
+        final String requestType;
+        final String requestParams;
+        final boolean success;
+        final CompletableFuture<Void> durable;
+
+        Record(long timestamp, String requestType, String requestParams, boolean success,
+               CompletableFuture<Void> durable) {
+            this.timestamp = timestamp;
+            this.requestType = requestType;
+            this.requestParams = requestParams;
+            this.success = success;
+            this.durable = durable;
+        }
+    }
+
+    private final File file;
+    private final AtomicReferenceArray<Record> ring;
+    private final int mask;
+    // Next sequence to claim (producers) and next sequence to consume (writer)
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    private final Thread writer;
+    private volatile boolean writerParked;
+    private volatile boolean running = true;
+    // Set once the file failed; records go to stderr from then on
+    private volatile IOException failure;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong fullWaits = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AuditLog(String city) {
+        this(new File("logs", city + "_Server.log"), DEFAULT_CAPACITY);
+    }
+
+    public AuditLog(File file, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.file = file;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+
+        this.writer = new Thread(this::writeLoop, "audit-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        // Drain what is still buffered when the server shuts down
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "audit-log-shutdown"));
+    }
+
+    /** Queues a record and returns without waiting for the disk. */
+    public void log(String requestType, String requestParams, boolean success) {
+        publish(new Record(System.currentTimeMillis(), requestType, requestParams, success, null));
+    }
+
+    /** Queues a record and waits until it is written and fsynced. */
+    public void logDurable(String requestType, String requestParams, boolean success) {
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        publish(new Record(System.currentTimeMillis(), requestType, requestParams, success, durable));
+        try {
+            durable.get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Audit log write failed: " + e.getMessage());
+        }
+    }
+
+    private void publish(Record record) {
+        if (!running) {
+            if (record.durable != null) {
+                record.durable.complete(null);
+            }
+            return;
+        }
+        IOException failed = failure;
+        if (failed != null) {
+            reject(record, failed);
+            return;
+        }
+        while (true) {
+            long sequence = tail.get();
+            if (sequence - head.get() > mask) {
+                // Ring is full, give the writer a moment to catch up
+                fullWaits.incrementAndGet();
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+                continue;
+            }
+            if (tail.compareAndSet(sequence, sequence + 1)) {
+                ring.set((int) sequence & mask, record);
+                break;
+            }
+        }
+        if (writerParked || record.durable != null) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void writeLoop() {
+        ByteBuffer buffer = ByteBuffer.allocate(FLUSH_BYTES * 2);
+        StringBuilder line = new StringBuilder(256);
+        List<CompletableFuture<Void>> waiting = new ArrayList<>();
+        long lastFlush = System.currentTimeMillis();
+        long cachedSecond = -1;
+        String cachedStamp = "";
+
+        try (FileChannel channel = openChannel()) {
+            while (running || head.get() != tail.get()) {
+                long sequence = head.get();
+                Record record = ring.get((int) sequence & mask);
+
+                if (record != null) {
+                    ring.set((int) sequence & mask, null);
+                    head.lazySet(sequence + 1);
+
+                    // Timestamps only change once a second, format them once
+                    long second = record.timestamp / 1000;
+                    if (second != cachedSecond) {
+                        cachedSecond = second;
+                        cachedStamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(record.timestamp),
+                                ZoneId.systemDefault()).format(TIMESTAMP_FORMAT);
+                    }
+                    line.setLength(0);
+                    line.append('[').append(cachedStamp).append("] ").append(record.requestType)
+                            .append(" | Params: ").append(record.requestParams)
+                            .append(" | Status: ").append(record.success ? "Successfully Completed" : "Failed")
+                            .append('\n');
+                    byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+                    if (bytes.length > buffer.remaining()) {
+                        flush(channel, buffer, waiting, false);
+                        lastFlush = System.currentTimeMillis();
+                    }
+                    if (bytes.length > buffer.remaining()) {
+                        channel.write(ByteBuffer.wrap(bytes)); // oversized single record
+                    } else {
+                        buffer.put(bytes);
+                    }
+                    written.incrementAndGet();
+                    if (record.durable != null) {
+                        waiting.add(record.durable);
+                    }
+                    if (buffer.position() < FLUSH_BYTES) {
+                        continue;
+                    }
+                }
+
+                // Ring drained (or batch large enough): apply the flush policy
+                long now = System.currentTimeMillis();
+                if (buffer.position() >= FLUSH_BYTES || !waiting.isEmpty()
+                        || (buffer.position() > 0 && now - lastFlush >= FLUSH_INTERVAL_MS)) {
+                    flush(channel, buffer, waiting, !waiting.isEmpty());
+                    lastFlush = now;
+                } else if (record == null) {
+                    writerParked = true;
+                    if (head.get() == tail.get()) {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS));
+                    } else {
+                        // Slot claimed but not yet filled in by its producer
+                        Thread.yield();
+                    }
+                    writerParked = false;
+                }
+            }
+            flush(channel, buffer, waiting, true);
+        } catch (IOException e) {
+            System.err.println("Audit log " + file + " failed, logging to stderr from now on: " + e);
+            failure = e;
+            for (CompletableFuture<Void> durable : waiting) {
+                durable.completeExceptionally(e);
+            }
+            drainAfterFailure(e);
+        }
+    }
+
+    // Keeps the ring moving for records published before the failure was seen, so no producer blocks on it
+    private void drainAfterFailure(IOException cause) {
+        while (running || head.get() != tail.get()) {
+            long sequence = head.get();
+            Record record = ring.get((int) sequence & mask);
+            if (record == null) {
+                if (head.get() == tail.get()) {
+                    writerParked = true;
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS));
+                    writerParked = false;
+                } else {
+                    Thread.yield();
+                }
+                continue;
+            }
+            ring.set((int) sequence & mask, null);
+            head.lazySet(sequence + 1);
+            reject(record, cause);
+        }
+    }
+
+    private void reject(Record record, IOException cause) {
+        rejected.incrementAndGet();
+        System.err.println("[audit] " + record.requestType + " | Params: " + record.requestParams +
+                " | Status: " + (record.success ? "Successfully Completed" : "Failed"));
+        if (record.durable != null) {
+            record.durable.completeExceptionally(cause);
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create log directory " + dir);
+        }
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private void flush(FileChannel channel, ByteBuffer buffer, List<CompletableFuture<Void>> waiting,
+                       boolean force) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        if (!force) {
+            return; // durable records keep waiting for the next forced flush
+        }
+        channel.force(false);
+        for (CompletableFuture<Void> durable : waiting) {
+            durable.complete(null);
+        }
+        waiting.clear();
+    }
+
+    /** Stops accepting records and waits for the writer to drain the ring. */
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public String getStats() {
+        return "Audit log: written=" + written.get() + ", queued=" + (tail.get() - head.get()) +
+                ", fullWaits=" + fullWaits.get() + ", rejected=" + rejected.get() + (failure != null ? ", FAILED" : "");
+    }
+}
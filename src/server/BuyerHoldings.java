@@ -0,0 +1,112 @@
+package server;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Share holdings per buyer. Each buyer's positions are a primitive
+ * {@link IntIntHashMap} from {@link ShareKey} ordinal to quantity, so a
+ * position costs two ints in flat arrays and updating an existing one
+ * allocates nothing. A sell, which only names the shareID, resolves the
+ * candidate keys through the market's {@link ShareKeyRegistry} and probes
+ * the buyer's map directly instead of scanning the positions.
+ *
+ * Single calls are thread-safe; read-modify-write sequences for a buyer
+ * must hold that buyer's stripe in {@link StripedLock}.
+ */
+public class BuyerHoldings {
+
+    private final ShareKeyRegistry shareKeys;
+    private final Map<String, IntIntHashMap> buyers = new ConcurrentHashMap<>();
+
+    public BuyerHoldings(ShareKeyRegistry shareKeys) {
+        this.shareKeys = shareKeys;
+    }
+
+    private IntIntHashMap positions(String buyerID) {
+        return buyers.computeIfAbsent(buyerID, k -> new IntIntHashMap());
+    }
+
+    public Integer get(String buyerID, ShareKey holdingKey) {
+        IntIntHashMap positions = buyers.get(buyerID);
+        if (positions == null) {
+            return null;
+        }
+        synchronized (positions) {
+            int quantity = positions.get(holdingKey.getOrdinal(), 0);
+            return quantity > 0 ? quantity : null;
+        }
+    }
+
+    public boolean contains(String buyerID, ShareKey holdingKey) {
+        return get(buyerID, holdingKey) != null;
+    }
+
+    // Returns the key under which the buyer owns shareID, or null
+    public ShareKey findKey(String buyerID, String shareID) {
+        IntIntHashMap positions = buyers.get(buyerID);
+        if (positions == null) {
+            return null;
+        }
+        synchronized (positions) {
+            for (ShareKey key : shareKeys.findByShareID(shareID)) {
+                if (positions.containsKey(key.getOrdinal())) {
+                    return key;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Adds quantity to the holding, creating it if needed
+    public void add(String buyerID, ShareKey holdingKey, int quantity) {
+        IntIntHashMap positions = positions(buyerID);
+        synchronized (positions) {
+            positions.addTo(holdingKey.getOrdinal(), quantity);
+        }
+    }
+
+    // Sets the holding to quantity; zero or less removes it
+    public void set(String buyerID, ShareKey holdingKey, int quantity) {
+        if (quantity <= 0) {
+            remove(buyerID, holdingKey);
+            return;
+        }
+        IntIntHashMap positions = positions(buyerID);
+        synchronized (positions) {
+            positions.put(holdingKey.getOrdinal(), quantity, 0);
+        }
+    }
+
+    // Removes the holding and returns the quantity it had, or null
+    public Integer remove(String buyerID, ShareKey holdingKey) {
+        IntIntHashMap positions = buyers.get(buyerID);
+        if (positions == null) {
+            return null;
+        }
+        synchronized (positions) {
+            int removed = positions.remove(holdingKey.getOrdinal(), 0);
+            return removed > 0 ? removed : null;
+        }
+    }
+
+    // Copy of the buyer's holdings, empty if the buyer owns nothing
+    public Map<ShareKey, Integer> copyOf(String buyerID) {
+        IntIntHashMap positions = buyers.get(buyerID);
+        if (positions == null) {
+            return Collections.emptyMap();
+        }
+        Map<ShareKey, Integer> copy = new LinkedHashMap<>();
+        synchronized (positions) {
+            positions.forEach((ordinal, quantity) -> copy.put(shareKeys.byOrdinal(ordinal), quantity));
+        }
+        return copy;
+    }
+
+    public Set<String> buyerIDs() {
+        return buyers.keySet();
+    }
+}
@@ -0,0 +1,49 @@
+package server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns dense int ordinals to buyer IDs so per-share holder sets can be
+ * kept as {@link CompactBitmap}s. Ordinals are never reused.
+ */
+public class BuyerRegistry {
+    private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+    private volatile String[] byOrdinal = new String[1024];
+    private int size;
+
+    // Returns the buyer's ordinal, or -1 if the buyer was never registered
+    public int find(String buyerID) {
+        Integer ordinal = ordinals.get(buyerID);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    // Returns the buyer's ordinal, registering the buyer on first use
+    public int intern(String buyerID) {
+        Integer ordinal = ordinals.get(buyerID);
+        return ordinal != null ? ordinal : register(buyerID);
+    }
+
+    private synchronized int register(String buyerID) {
+        Integer existing = ordinals.get(buyerID);
+        if (existing != null) {
+            return existing;
+        }
+        String[] table = byOrdinal;
+        if (size == table.length) {
+            String[] grown = new String[table.length * 2];
+            System.arraycopy(table, 0, grown, 0, table.length);
+            table = grown;
+        }
+        int ordinal = size++;
+        table[ordinal] = buyerID;
+        byOrdinal = table;
+        ordinals.put(buyerID, ordinal);
+        return ordinal;
+    }
+
+    public String byOrdinal(int ordinal) {
+        String[] table = byOrdinal;
+        return ordinal < table.length ? table[ordinal] : null;
+    }
+}
@@ -0,0 +1,106 @@
+package server;
+
+/**
+ * Circuit breaker for calls to one peer market.
+ *
+ *   CLOSED     calls go through; failureThreshold consecutive failures open it
+ *   OPEN       calls fail fast; after the cool-down the next call is let
+ *              through as a probe and the breaker turns HALF_OPEN
+ *   HALF_OPEN  only the probe is in flight; its success closes the breaker,
+ *              its failure opens it again with a doubled cool-down
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long baseCooldownMs;
+    private final long maxCooldownMs;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long cooldownMs;
+    private long openUntil;
+    private long rejected;
+    private long opened;
+
+    public CircuitBreaker(int failureThreshold, long baseCooldownMs, long maxCooldownMs) {
+        this.failureThreshold = failureThreshold;
+        this.baseCooldownMs = baseCooldownMs;
+        this.maxCooldownMs = maxCooldownMs;
+        this.cooldownMs = baseCooldownMs;
+    }
+
+    // Whether a call may go out now; false means fail fast
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() >= openUntil) {
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                rejected++;
+                return false;
+            default:
+                rejected++;
+                return false;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        cooldownMs = baseCooldownMs;
+    }
+
+    // A heartbeat answered: closes the breaker unless it is still cooling down
+    public synchronized void onProbeSuccess() {
+        if (state != State.OPEN || System.currentTimeMillis() >= openUntil) {
+            onSuccess();
+        }
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN) {
+            cooldownMs = Math.min(cooldownMs * 2, maxCooldownMs);
+            open();
+        } else if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            open();
+        }
+    }
+
+    // Opens the breaker regardless of the failure count, e.g. when the failure detector suspects the peer
+    public synchronized void trip() {
+        if (state == State.CLOSED) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = System.currentTimeMillis() + cooldownMs;
+        opened++;
+    }
+
+    // Like allowRequest, but never lets a probe through; counts the rejection
+    public synchronized boolean isClosed() {
+        if (state != State.CLOSED) {
+            rejected++;
+        }
+        return state == State.CLOSED;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized String getStats() {
+        return "state=" + state + ", consecutiveFailures=" + consecutiveFailures + ", opened=" + opened +
+                ", rejected=" + rejected;
+    }
+}
@@ -0,0 +1,222 @@
+package server;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed bitmap of non-negative ints, laid out like a roaring bitmap:
+ * values are grouped by their high 16 bits, and each group is stored as a
+ * sorted char array while it is sparse (up to 4096 values) or as a 65536-bit
+ * bitset once it is dense. Membership is a binary search over the groups
+ * plus one probe, the cardinality is kept as a counter.
+ *
+ * All methods are synchronized.
+ */
+public class CompactBitmap implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int ARRAY_LIMIT = 4096;
+
+    private char[] highs = new char[0];
+    private Container[] containers = new Container[0];
+    private int groups;
+    private int cardinality;
+
+    private abstract static class Container implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        abstract boolean contains(char low);
+        // Returns the container after the change (it may switch representation), or null if unchanged
+        abstract Container add(char low);
+        abstract Container remove(char low);
+        abstract int size();
+        abstract void forEach(int high, IntConsumer action);
+    }
+
+    private static final class ArrayContainer extends Container {
+        private static final long serialVersionUID = 1L;
+
+        char[] values = new char[4];
+        int size;
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, size, low) >= 0;
+        }
+
+        @Override
+        Container add(char low) {
+            int i = Arrays.binarySearch(values, 0, size, low);
+            if (i >= 0) {
+                return null;
+            }
+            if (size == ARRAY_LIMIT) {
+                BitmapContainer bitmap = new BitmapContainer();
+                for (int j = 0; j < size; j++) {
+                    bitmap.add(values[j]);
+                }
+                bitmap.add(low);
+                return bitmap;
+            }
+            i = -i - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, size * 2));
+            }
+            System.arraycopy(values, i, values, i + 1, size - i);
+            values[i] = low;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            int i = Arrays.binarySearch(values, 0, size, low);
+            if (i < 0) {
+                return null;
+            }
+            System.arraycopy(values, i + 1, values, i, size - i - 1);
+            size--;
+            return this;
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < size; i++) {
+                action.accept(high << 16 | values[i]);
+            }
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private static final long serialVersionUID = 1L;
+
+        final long[] words = new long[1024];
+        int size;
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        Container add(char low) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) != 0) {
+                return null;
+            }
+            words[low >>> 6] |= bit;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) {
+                return null;
+            }
+            words[low >>> 6] &= ~bit;
+            size--;
+            if (size > ARRAY_LIMIT) {
+                return this;
+            }
+            // Sparse again, go back to the array form
+            ArrayContainer array = new ArrayContainer();
+            array.values = new char[size];
+            forEach(0, v -> array.values[array.size++] = (char) v);
+            return array;
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int w = 0; w < words.length; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    int bit = Long.numberOfTrailingZeros(word);
+                    action.accept(high << 16 | (w << 6) + bit);
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+    private int groupIndex(char high) {
+        return Arrays.binarySearch(highs, 0, groups, high);
+    }
+
+    public synchronized boolean contains(int value) {
+        int g = groupIndex((char) (value >>> 16));
+        return g >= 0 && containers[g].contains((char) value);
+    }
+
+    // Returns true if the value was not present yet
+    public synchronized boolean add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value " + value);
+        }
+        char high = (char) (value >>> 16);
+        int g = groupIndex(high);
+        if (g < 0) {
+            g = -g - 1;
+            if (groups == highs.length) {
+                int capacity = Math.max(4, groups * 2);
+                highs = Arrays.copyOf(highs, capacity);
+                containers = Arrays.copyOf(containers, capacity);
+            }
+            System.arraycopy(highs, g, highs, g + 1, groups - g);
+            System.arraycopy(containers, g, containers, g + 1, groups - g);
+            highs[g] = high;
+            containers[g] = new ArrayContainer();
+            groups++;
+        }
+        Container changed = containers[g].add((char) value);
+        if (changed == null) {
+            return false;
+        }
+        containers[g] = changed;
+        cardinality++;
+        return true;
+    }
+
+    // Returns true if the value was present
+    public synchronized boolean remove(int value) {
+        int g = groupIndex((char) (value >>> 16));
+        if (g < 0) {
+            return false;
+        }
+        Container changed = containers[g].remove((char) value);
+        if (changed == null) {
+            return false;
+        }
+        cardinality--;
+        if (changed.size() == 0) {
+            System.arraycopy(highs, g + 1, highs, g, groups - g - 1);
+            System.arraycopy(containers, g + 1, containers, g, groups - g - 1);
+            containers[--groups] = null;
+        } else {
+            containers[g] = changed;
+        }
+        return true;
+    }
+
+    public synchronized int cardinality() {
+        return cardinality;
+    }
+
+    // Visits the values in ascending order
+    public synchronized void forEach(IntConsumer action) {
+        for (int g = 0; g < groups; g++) {
+            containers[g].forEach(highs[g], action);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package server;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the results of mutating requests by request ID so that a resent
+ * request gets the original result back instead of being applied twice.
+ * A duplicate that arrives while the first copy is still running waits for
+ * it and returns the same result.
+ *
+ * The cache is bounded: entries are evicted in arrival order once they are
+ * older than the TTL or the cache holds more than maxEntries. Senders must
+ * not resend a request later than the TTL after the first attempt.
+ */
+public class IdempotencyCache<K, V> {
+
+    private static final class Entry<V> {
+        final CompletableFuture<V> result = new CompletableFuture<>();
+        final long createdAt = System.currentTimeMillis();
+    }
+
+    private final int maxEntries;
+    private final long ttlMs;
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<K> arrivalOrder = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    public IdempotencyCache(int maxEntries, long ttlMs) {
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Runs the operation for the first request with this ID and returns its
+     * result; later requests with the same ID return that result without
+     * running it again. An operation that throws is not cached, so a resend
+     * runs it again.
+     */
+    public V execute(K requestId, Supplier<V> operation) {
+        Entry<V> entry = new Entry<>();
+        Entry<V> existing = entries.putIfAbsent(requestId, entry);
+        if (existing != null) {
+            replayed.incrementAndGet();
+            return await(existing);
+        }
+        arrivalOrder.add(requestId);
+        evictExpired();
+
+        executed.incrementAndGet();
+        try {
+            V result = operation.get();
+            entry.result.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            entries.remove(requestId, entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private V await(Entry<V> entry) {
+        try {
+            return entry.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the original request", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Original request failed", e.getCause());
+        }
+    }
+
+    private void evictExpired() {
+        long oldest = System.currentTimeMillis() - ttlMs;
+        K head;
+        while ((head = arrivalOrder.peek()) != null) {
+            Entry<V> entry = entries.get(head);
+            boolean stale = entry == null || entry.createdAt < oldest || entries.size() > maxEntries;
+            // A request still running is never evicted, its duplicates must find it
+            if (!stale || (entry != null && !entry.result.isDone())) {
+                return;
+            }
+            if (arrivalOrder.remove(head) && entry != null && entries.remove(head, entry)) {
+                evicted.incrementAndGet();
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public String getStats() {
+        return "Idempotency cache: entries=" + entries.size() + ", executed=" + executed.get() +
+                ", replayed=" + replayed.get() + ", evicted=" + evicted.get();
+    }
+}
@@ -0,0 +1,505 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of inventory mutations with periodic snapshots.
+ *
+ * Every mutation is appended as a sequence-numbered, CRC-checked record. A
+ * single writer thread drains all queued records into one FileChannel write
+ * (group commit) and fsyncs according to the {@link FsyncPolicy}. A snapshot
+ * captures the full state at an exact sequence number, rotates the log to a
+ * new segment and deletes the segments it covers, so recovery only reads
+ * the snapshot plus the short tail written after it.
+ *
+ * Mutations must hold {@link #enter()} while changing state and appending
+ * their record; the snapshot takes the exclusive side of that gate just long
+ * enough to copy the state.
+ */
+public class InventoryJournal {
+
+    public enum FsyncPolicy {
+        /** Callers do not wait; records reach the file shortly after, never fsynced explicitly. */
+        ASYNC,
+        /** Callers wait until their record is written; the file is fsynced on a timer. */
+        INTERVAL,
+        /** Callers wait until their record is written and fsynced (group commit). */
+        SYNC
+    }
+
+    public enum Type {
+        ADD_SHARE, REMOVE_SHARE, PURCHASE, SELL, SWAP_OUT, SWAP_IN
+    }
+
+    // One logged mutation: buyerID is empty for share-level records
+    public static final class Entry {
+        final Type type;
+        final String buyerID;
+        final String shareType;
+        final String shareID;
+        final int count;
+        // Swap hold a SWAP_IN committed, 0 for every other record
+        final long reference;
+        long sequence;
+        CompletableFuture<Void> done;
+
+        public Entry(Type type, String buyerID, String shareType, String shareID, int count) {
+            this(type, buyerID, shareType, shareID, count, 0);
+        }
+
+        public Entry(Type type, String buyerID, String shareType, String shareID, int count, long reference) {
+            this.type = type;
+            this.buyerID = buyerID == null ? "" : buyerID;
+            this.shareType = shareType;
+            this.shareID = shareID;
+            this.count = count;
+            this.reference = reference;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public String getBuyerID() {
+            return buyerID;
+        }
+
+        public String getShareType() {
+            return shareType;
+        }
+
+        public String getShareID() {
+            return shareID;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getReference() {
+            return reference;
+        }
+    }
+
+    // Full inventory state, captured for a snapshot or restored from one
+    public static final class State {
+        public final List<Object[]> shares = new ArrayList<>();   // {type, id, available, total}
+        public final List<Object[]> holdings = new ArrayList<>(); // {buyerID, shareType, shareID, quantity}
+        public final List<Long> committedSwaps = new ArrayList<>(); // IDs of swap holds committed here
+    }
+
+    /** Held by a mutation while it changes state and appends its record. */
+    public interface Gate extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    // Gate for markets running without a journal
+    public static final Gate NO_GATE = () -> { };
+
+    /** What the journal needs from the market it persists. */
+    public interface Target {
+        State captureState();
+
+        void restoreState(State state);
+
+        void replay(Entry entry);
+    }
+
+    private static final int SNAPSHOT_MAGIC = 0x44534D53; // "DSMS"
+    private static final long FSYNC_INTERVAL_MS = 100;
+    // A snapshot is taken every SNAPSHOT_EVERY_MS if anything was logged, or as soon as
+    // SNAPSHOT_EVERY_RECORDS have been logged since the last one
+    private static final long SNAPSHOT_CHECK_MS = 1000;
+    private static final long SNAPSHOT_EVERY_MS = 60_000;
+    private static final long SNAPSHOT_EVERY_RECORDS = 100_000;
+
+    // Queued in place of a record to make the writer switch to a new segment
+    private static final Entry ROTATE = new Entry(Type.ADD_SHARE, "", "", "", 0);
+
+    private final File directory;
+    private final FsyncPolicy policy;
+    private final Target target;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final ReentrantReadWriteLock gate = new ReentrantReadWriteLock();
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final AtomicLong committedRecords = new AtomicLong();
+    private volatile long lastSnapshotSequence;
+    private volatile long lastSnapshotMillis = System.currentTimeMillis();
+    private volatile long rotateSequence;
+    private volatile FileChannel segment;
+
+    private final ScheduledExecutorService background = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "journal-background");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public InventoryJournal(File directory, FsyncPolicy policy, Target target) {
+        this.directory = directory;
+        this.policy = policy;
+        this.target = target;
+    }
+
+    /** Reads the system properties dsms.wal (on/off), dsms.wal.dir and dsms.wal.fsync. */
+    public static InventoryJournal fromSystemProperties(String city, Target target) {
+        if ("off".equalsIgnoreCase(System.getProperty("dsms.wal", "on"))) {
+            return null;
+        }
+        File dir = new File(System.getProperty("dsms.wal.dir", "data"), city);
+        FsyncPolicy policy = FsyncPolicy.valueOf(System.getProperty("dsms.wal.fsync", "INTERVAL").toUpperCase());
+        return new InventoryJournal(dir, policy, target);
+    }
+
+    /**
+     * Restores the target from the latest snapshot and log tail, then opens
+     * a fresh segment and starts the writer.
+     */
+    public void open() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create journal directory " + directory);
+        }
+        long sequence = 0;
+        File snapshot = new File(directory, "snapshot.dat");
+        if (snapshot.exists()) {
+            sequence = readSnapshot(snapshot);
+        }
+        lastSnapshotSequence = sequence;
+        // Segments left over from before the snapshot only hold older records,
+        // which replaySegment skips by sequence number
+        for (File log : segments()) {
+            sequence = Math.max(sequence, replaySegment(log, lastSnapshotSequence));
+        }
+        nextSequence.set(sequence);
+        segment = openSegment(sequence);
+
+        Thread writer = new Thread(this::writeLoop, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        if (policy == FsyncPolicy.INTERVAL) {
+            background.scheduleWithFixedDelay(this::forceQuietly, FSYNC_INTERVAL_MS, FSYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+        background.scheduleWithFixedDelay(this::snapshotIfDue, SNAPSHOT_CHECK_MS, SNAPSHOT_CHECK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public Gate enter() {
+        ReentrantReadWriteLock.ReadLock lock = gate.readLock();
+        lock.lock();
+        return lock::unlock;
+    }
+
+    /**
+     * Queues the record; call while holding {@link #enter()}. The returned
+     * future completes when the record is as durable as the policy requires.
+     */
+    public CompletableFuture<Void> append(Entry entry) {
+        entry.done = new CompletableFuture<>();
+        if (policy == FsyncPolicy.ASYNC) {
+            entry.done.complete(null);
+        }
+        // Numbered and queued in one step, so records reach the file in sequence order
+        synchronized (queue) {
+            entry.sequence = nextSequence.getAndIncrement();
+            queue.add(entry);
+        }
+        return entry.done;
+    }
+
+    // Waits for an appended record, outside any lock; false if it could not be written
+    public boolean await(CompletableFuture<Void> ticket) {
+        try {
+            ticket.get();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            System.err.println("Journal write failed: " + e.getCause());
+            return false;
+        }
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        while (true) {
+            try {
+                batch.clear();
+                batch.add(queue.take());
+                queue.drainTo(batch);
+
+                bytes.reset();
+                for (Entry entry : batch) {
+                    if (entry == ROTATE) {
+                        writeBatch(bytes);
+                        bytes.reset();
+                        segment.force(false);
+                        segment.close();
+                        segment = openSegment(rotateSequence);
+                        continue;
+                    }
+                    encode(entry, out);
+                }
+                writeBatch(bytes);
+                if (policy == FsyncPolicy.SYNC) {
+                    segment.force(false);
+                }
+                for (Entry entry : batch) {
+                    if (entry != ROTATE) {
+                        committedRecords.incrementAndGet();
+                        entry.done.complete(null);
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                for (Entry entry : batch) {
+                    if (entry != ROTATE) {
+                        entry.done.completeExceptionally(e);
+                    }
+                }
+            }
+        }
+    }
+
+    private void writeBatch(ByteArrayOutputStream bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+    }
+
+    private void forceQuietly() {
+        try {
+            segment.force(false);
+        } catch (Exception e) {
+            // Segment may be rotating; the next tick retries
+        }
+    }
+
+    // Record layout: length(4) crc(4) payload
+    private static void encode(Entry entry, DataOutputStream out) throws IOException {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(64);
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeLong(entry.sequence);
+        payload.writeByte(entry.type.ordinal());
+        payload.writeUTF(entry.buyerID);
+        payload.writeUTF(entry.shareType);
+        payload.writeUTF(entry.shareID);
+        payload.writeInt(entry.count);
+        if (entry.reference != 0) {
+            payload.writeLong(entry.reference);
+        }
+
+        byte[] data = payloadBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        out.writeInt(data.length);
+        out.writeInt((int) crc.getValue());
+        out.write(data);
+    }
+
+    /**
+     * Replays records at or after fromSequence. A torn or corrupt tail is
+     * cut off the file, so records appended to the segment after recovery
+     * are not hidden behind it at the next one.
+     */
+    private long replaySegment(File log, long fromSequence) throws IOException {
+        long next = fromSequence;
+        long fileLength = log.length();
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(log)))) {
+            while (valid < fileLength) {
+                if (fileLength - valid < 8) {
+                    System.err.println("Journal " + log.getName() + ": torn record at tail, ignoring it");
+                    break;
+                }
+                int length = in.readInt();
+                int expectedCrc = in.readInt();
+                if (length < 0 || length > fileLength - valid - 8) {
+                    System.err.println("Journal " + log.getName() + ": torn record at tail, ignoring it");
+                    break;
+                }
+                byte[] data = new byte[length];
+                in.readFully(data);
+                CRC32 crc = new CRC32();
+                crc.update(data);
+                if ((int) crc.getValue() != expectedCrc) {
+                    System.err.println("Journal " + log.getName() + ": corrupt record, ignoring the rest");
+                    break;
+                }
+                DataInputStream payload = new DataInputStream(new ByteArrayInputStream(data));
+                long sequence = payload.readLong();
+                Entry entry = new Entry(Type.values()[payload.readByte()], payload.readUTF(), payload.readUTF(),
+                        payload.readUTF(), payload.readInt(), payload.available() >= 8 ? payload.readLong() : 0);
+                if (sequence >= fromSequence) {
+                    target.replay(entry);
+                    next = Math.max(next, sequence + 1);
+                }
+                valid += 8 + length;
+            }
+        }
+        if (valid < fileLength) {
+            try (FileChannel channel = FileChannel.open(log.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+                channel.force(true);
+            }
+        }
+        return next;
+    }
+
+    private File[] segments() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith("wal-") && name.endsWith(".log"));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(segmentStart(a), segmentStart(b)));
+        return files;
+    }
+
+    private static long segmentStart(File log) {
+        String name = log.getName();
+        return Long.parseLong(name.substring(4, name.length() - 4));
+    }
+
+    private FileChannel openSegment(long startSequence) throws IOException {
+        File file = new File(directory, String.format("wal-%020d.log", startSequence));
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private void snapshotIfDue() {
+        long pending = nextSequence.get() - lastSnapshotSequence;
+        boolean stale = System.currentTimeMillis() - lastSnapshotMillis >= SNAPSHOT_EVERY_MS;
+        if (pending >= SNAPSHOT_EVERY_RECORDS || (pending > 0 && stale)) {
+            try {
+                snapshot();
+            } catch (IOException e) {
+                System.err.println("Snapshot failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Captures the state at an exact sequence number, writes it out and
+     * deletes the log segments it makes redundant.
+     */
+    public synchronized void snapshot() throws IOException {
+        State state;
+        long sequence;
+        ReentrantReadWriteLock.WriteLock lock = gate.writeLock();
+        lock.lock();
+        try {
+            // No mutation is in flight: every record below this sequence is queued
+            sequence = nextSequence.get();
+            state = target.captureState();
+            rotateSequence = sequence;
+            queue.add(ROTATE);
+        } finally {
+            lock.unlock();
+        }
+
+        File temp = new File(directory, "snapshot.tmp");
+        try (FileOutputStream file = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(sequence);
+            out.writeInt(state.shares.size());
+            for (Object[] share : state.shares) {
+                out.writeUTF((String) share[0]);
+                out.writeUTF((String) share[1]);
+                out.writeInt((Integer) share[2]);
+                out.writeInt((Integer) share[3]);
+            }
+            out.writeInt(state.holdings.size());
+            for (Object[] holding : state.holdings) {
+                out.writeUTF((String) holding[0]);
+                out.writeUTF((String) holding[1]);
+                out.writeUTF((String) holding[2]);
+                out.writeInt((Integer) holding[3]);
+            }
+            out.writeInt(state.committedSwaps.size());
+            for (long holdId : state.committedSwaps) {
+                out.writeLong(holdId);
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp.toPath(), new File(directory, "snapshot.dat").toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lastSnapshotSequence = sequence;
+        lastSnapshotMillis = System.currentTimeMillis();
+
+        for (File log : segments()) {
+            if (segmentStart(log) < sequence) {
+                Files.deleteIfExists(log.toPath());
+            }
+        }
+    }
+
+    private long readSnapshot(File snapshot) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshot)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a snapshot file: " + snapshot);
+            }
+            long sequence = in.readLong();
+            State state = new State();
+            int shareCount = in.readInt();
+            for (int i = 0; i < shareCount; i++) {
+                state.shares.add(new Object[]{in.readUTF(), in.readUTF(), in.readInt(), in.readInt()});
+            }
+            int holdingCount = in.readInt();
+            for (int i = 0; i < holdingCount; i++) {
+                state.holdings.add(new Object[]{in.readUTF(), in.readUTF(), in.readUTF(), in.readInt()});
+            }
+            int committedCount;
+            try {
+                committedCount = in.readInt();
+            } catch (EOFException e) {
+                committedCount = 0; // Written before committed swaps were kept
+            }
+            for (int i = 0; i < committedCount; i++) {
+                state.committedSwaps.add(in.readLong());
+            }
+            target.restoreState(state);
+            return sequence;
+        }
+    }
+
+    public long getCommittedRecords() {
+        return committedRecords.get();
+    }
+
+    public FsyncPolicy getPolicy() {
+        return policy;
+    }
+}
@@ -0,0 +1,88 @@
+package server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Routing table from share ID location prefix to the owning market, and
+ * from market name to its UDP port. Built from the LOCTDDMMYY locations
+ * known to {@link ShareId} with the default ports below, then extended or
+ * overridden by -Ddsms.markets, a comma-separated list of PREFIX=Market:port
+ * entries, e.g. "NYK=NewYork:5000,SGP=Singapore:5003". Ports registered
+ * through {@link #setUdpPort} (addRemoteServer) take precedence.
+ *
+ * A request for a share that is not local goes straight to the market named
+ * by its prefix; a market that receives a request for a share another market
+ * owns counts it as misrouted and answers it without forwarding.
+ */
+public class MarketDirectory {
+    private final Map<String, String> marketsByPrefix = new ConcurrentHashMap<>();
+    private final Map<String, Integer> udpPorts = new ConcurrentHashMap<>();
+
+    private final AtomicLong routed = new AtomicLong();
+    private final AtomicLong misrouted = new AtomicLong();
+    private final AtomicLong unroutable = new AtomicLong();
+
+    public MarketDirectory() {
+        add("NYK", ShareId.marketOf("NYK"), 5000);
+        add("LON", ShareId.marketOf("LON"), 5001);
+        add("TOK", ShareId.marketOf("TOK"), 5002);
+
+        String configured = System.getProperty("dsms.markets", "");
+        for (String entry : configured.split(",")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            String[] prefixAndMarket = entry.trim().split("=");
+            String[] marketAndPort = prefixAndMarket.length == 2 ? prefixAndMarket[1].split(":") : new String[0];
+            if (marketAndPort.length != 2) {
+                throw new IllegalArgumentException("Bad dsms.markets entry '" + entry + "', expected PREFIX=Market:port");
+            }
+            add(prefixAndMarket[0], marketAndPort[0], Integer.parseInt(marketAndPort[1]));
+        }
+    }
+
+    private void add(String prefix, String market, int udpPort) {
+        marketsByPrefix.put(prefix.toUpperCase(), market);
+        udpPorts.put(market, udpPort);
+    }
+
+    // Market that owns the share ID, or null if its prefix is unknown
+    public String marketOf(String shareID) {
+        if (shareID == null || shareID.length() < 3) {
+            return null;
+        }
+        return marketsByPrefix.get(shareID.substring(0, 3).toUpperCase());
+    }
+
+    // UDP port of the market, or -1 if it is unknown
+    public int getUdpPort(String market) {
+        Integer port = udpPorts.get(market);
+        return port == null ? -1 : port;
+    }
+
+    public void setUdpPort(String market, int udpPort) {
+        udpPorts.put(market, udpPort);
+    }
+
+    public void recordRouted() {
+        routed.incrementAndGet();
+    }
+
+    public void recordMisrouted() {
+        misrouted.incrementAndGet();
+    }
+
+    public void recordUnroutable() {
+        unroutable.incrementAndGet();
+    }
+
+    public long getMisrouted() {
+        return misrouted.get();
+    }
+
+    public String getStats() {
+        return "Routing: routed=" + routed.get() + ", misrouted=" + misrouted.get() + ", unroutable=" + unroutable.get();
+    }
+}
@@ -0,0 +1,140 @@
+package server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Liveness of the other markets. Every heartbeat interval each peer is sent
+ * a UDP HEARTBEAT; replies feed a {@link PhiAccrualDetector} per peer, and a
+ * {@link CircuitBreaker} per peer is opened when phi crosses the threshold
+ * or calls keep failing. Callers ask {@link #isAvailable} before contacting
+ * a market and skip it or fail fast while its breaker is open. Once the
+ * cool-down has passed, the next answered heartbeat closes the breaker
+ * again, so no client request has to wait on a dead market to find out
+ * that it recovered. With heartbeats off, the breaker lets one request
+ * through as the probe instead.
+ *
+ * Settings: dsms.heartbeat=off disables heartbeats, dsms.heartbeat.intervalMs
+ * (500), dsms.fd.phiThreshold (8), dsms.breaker.failures (3),
+ * dsms.breaker.cooldownMs (1000).
+ */
+public class PeerMonitor {
+    private static final long INTERVAL_MS = Long.getLong("dsms.heartbeat.intervalMs", 500);
+    private static final double PHI_THRESHOLD = Double.parseDouble(System.getProperty("dsms.fd.phiThreshold", "8"));
+    private static final int FAILURE_THRESHOLD = Integer.getInteger("dsms.breaker.failures", 3);
+    private static final long COOLDOWN_MS = Long.getLong("dsms.breaker.cooldownMs", 1000);
+    private static final long MAX_COOLDOWN_MS = 30_000;
+
+    private static final class Peer {
+        final int port;
+        final PhiAccrualDetector detector = new PhiAccrualDetector(INTERVAL_MS, INTERVAL_MS / 4);
+        final CircuitBreaker breaker = new CircuitBreaker(FAILURE_THRESHOLD, COOLDOWN_MS, MAX_COOLDOWN_MS);
+        final AtomicBoolean heartbeatInFlight = new AtomicBoolean();
+
+        Peer(int port) {
+            this.port = port;
+        }
+    }
+
+    private final String city;
+    private final UDPClient udpClient;
+    private final ExecutorService callers;
+    private final Map<String, Peer> peers = new ConcurrentHashMap<>();
+    private final boolean heartbeats = !"off".equalsIgnoreCase(System.getProperty("dsms.heartbeat", "on"));
+
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "peer-heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public PeerMonitor(String city, UDPClient udpClient, ExecutorService callers) {
+        this.city = city;
+        this.udpClient = udpClient;
+        this.callers = callers;
+        if (heartbeats) {
+            ticker.scheduleWithFixedDelay(this::tick, INTERVAL_MS, INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void addPeer(String market, int port) {
+        if (!market.equalsIgnoreCase(city)) {
+            peers.putIfAbsent(market, new Peer(port));
+        }
+    }
+
+    // False while the market's breaker is open; unknown markets are assumed available
+    public boolean isAvailable(String market) {
+        Peer peer = peers.get(market);
+        if (peer == null) {
+            return true;
+        }
+        return heartbeats ? peer.breaker.isClosed() : peer.breaker.allowRequest();
+    }
+
+    public void recordSuccess(String market) {
+        Peer peer = peers.get(market);
+        if (peer != null) {
+            peer.breaker.onSuccess();
+        }
+    }
+
+    public void recordFailure(String market) {
+        Peer peer = peers.get(market);
+        if (peer != null) {
+            peer.breaker.onFailure();
+        }
+    }
+
+    public double phi(String market) {
+        Peer peer = peers.get(market);
+        return peer == null ? 0 : peer.detector.phi(System.currentTimeMillis());
+    }
+
+    private void tick() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Peer> entry : peers.entrySet()) {
+            Peer peer = entry.getValue();
+            if (peer.detector.phi(now) > PHI_THRESHOLD) {
+                peer.breaker.trip();
+            }
+            // One heartbeat per peer at a time, a slow peer must not pile them up
+            if (peer.heartbeatInFlight.compareAndSet(false, true)) {
+                callers.submit(() -> heartbeat(peer));
+            }
+        }
+    }
+
+    private void heartbeat(Peer peer) {
+        try {
+            WireProtocol.Reply reply = udpClient.call("localhost", peer.port, WireProtocol.Request.heartbeat(city),
+                    INTERVAL_MS);
+            if (reply.isOk()) {
+                peer.detector.heartbeat(System.currentTimeMillis());
+                peer.breaker.onProbeSuccess();
+            } else {
+                peer.breaker.onFailure();
+            }
+        } catch (Exception e) {
+            peer.breaker.onFailure();
+        } finally {
+            peer.heartbeatInFlight.set(false);
+        }
+    }
+
+    public String getStats() {
+        StringBuilder stats = new StringBuilder("Peers:");
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Peer> entry : peers.entrySet()) {
+            Peer peer = entry.getValue();
+            stats.append("\n  ").append(entry.getKey()).append(String.format(" phi=%.2f ", peer.detector.phi(now)))
+                    .append(peer.breaker.getStats());
+        }
+        return stats.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package server;
+
+/**
+ * Round-trip time statistics for one peer market. Keeps the smoothed RTT
+ * and RTT variance the way TCP does (RFC 6298) to derive a retransmission
+ * timeout, and a histogram of all samples in power-of-two microsecond
+ * buckets for percentiles and monitoring.
+ *
+ * Only replies to requests that were sent once may be recorded; a reply
+ * to a resent request cannot be matched to one attempt.
+ */
+public class PeerRtt {
+    private static final int BUCKETS = 32;
+
+    private final long minTimeoutMs;
+    private final long maxTimeoutMs;
+    private final long initialTimeoutMs;
+
+    private double srttMs;
+    private double rttvarMs;
+    private long samples;
+    private long timeouts;
+    private final long[] histogram = new long[BUCKETS];
+
+    public PeerRtt(long minTimeoutMs, long maxTimeoutMs, long initialTimeoutMs) {
+        this.minTimeoutMs = minTimeoutMs;
+        this.maxTimeoutMs = maxTimeoutMs;
+        this.initialTimeoutMs = initialTimeoutMs;
+    }
+
+    public synchronized void record(long rttNanos) {
+        double rttMs = rttNanos / 1_000_000.0;
+        if (samples == 0) {
+            srttMs = rttMs;
+            rttvarMs = rttMs / 2;
+        } else {
+            rttvarMs = 0.75 * rttvarMs + 0.25 * Math.abs(srttMs - rttMs);
+            srttMs = 0.875 * srttMs + 0.125 * rttMs;
+        }
+        samples++;
+        histogram[bucket(rttNanos / 1000)]++;
+    }
+
+    public synchronized void recordTimeout() {
+        timeouts++;
+    }
+
+    // Timeout for the first attempt of a request; the caller backs off for retries
+    public synchronized long timeoutMs() {
+        if (samples == 0) {
+            return initialTimeoutMs;
+        }
+        long rto = (long) Math.ceil(srttMs + Math.max(1, 4 * rttvarMs));
+        return Math.max(minTimeoutMs, Math.min(maxTimeoutMs, rto));
+    }
+
+    /**
+     * How long to wait before hedging a read: the 95th percentile RTT once
+     * there are enough samples, never more than the timeout.
+     */
+    public synchronized long hedgeDelayMs() {
+        long timeout = timeoutMs();
+        if (samples < 20) {
+            return timeout;
+        }
+        return Math.max(1, Math.min(timeout, percentileMicros(0.95) / 1000));
+    }
+
+    // Upper bound of the histogram bucket holding the given percentile
+    public synchronized long percentileMicros(double percentile) {
+        long rank = (long) Math.ceil(percentile * samples);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += histogram[i];
+            if (seen >= rank && seen > 0) {
+                return 1L << i;
+            }
+        }
+        return 0;
+    }
+
+    private static int bucket(long micros) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, micros)));
+    }
+
+    public synchronized long[] getHistogram() {
+        return histogram.clone();
+    }
+
+    public synchronized String getStats() {
+        StringBuilder stats = new StringBuilder();
+        stats.append(String.format("srtt=%.2fms rttvar=%.2fms timeout=%dms samples=%d timeouts=%d p50=%dus p99=%dus",
+                srttMs, rttvarMs, timeoutMs(), samples, timeouts, percentileMicros(0.5), percentileMicros(0.99)));
+        stats.append(" histogram(us)=[");
+        boolean first = true;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (histogram[i] == 0) {
+                continue;
+            }
+            if (!first) {
+                stats.append(", ");
+            }
+            stats.append("<").append(1L << i).append(':').append(histogram[i]);
+            first = false;
+        }
+        return stats.append(']').toString();
+    }
+}
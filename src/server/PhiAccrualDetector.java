@@ -0,0 +1,68 @@
+package server;
+
+/**
+ * Phi accrual failure detector for one peer (Hayashibara et al.). Keeps a
+ * sliding window of heartbeat inter-arrival times and reports phi, the
+ * suspicion that the peer is down: phi = -log10(P(a heartbeat arrives later
+ * than now)), with the inter-arrival times taken as normally distributed.
+ * phi 1 means a 10% chance the peer is alive and merely late, phi 8 about
+ * one in 10^8.
+ */
+public class PhiAccrualDetector {
+    private static final int WINDOW = 100;
+
+    private final long minStdDevMs;
+    private final long[] intervals = new long[WINDOW];
+    private int count;
+    private int next;
+    private long sum;
+    private long sumOfSquares;
+    private long lastHeartbeat = -1;
+
+    public PhiAccrualDetector(long expectedIntervalMs, long minStdDevMs) {
+        this.minStdDevMs = minStdDevMs;
+        // Seed with the expected interval so the first heartbeats are judged sensibly
+        add(expectedIntervalMs);
+        add(expectedIntervalMs + minStdDevMs);
+    }
+
+    public synchronized void heartbeat(long nowMs) {
+        if (lastHeartbeat >= 0) {
+            add(nowMs - lastHeartbeat);
+        }
+        lastHeartbeat = nowMs;
+    }
+
+    private void add(long interval) {
+        if (count == WINDOW) {
+            long old = intervals[next];
+            sum -= old;
+            sumOfSquares -= old * old;
+        } else {
+            count++;
+        }
+        intervals[next] = interval;
+        next = (next + 1) % WINDOW;
+        sum += interval;
+        sumOfSquares += interval * interval;
+    }
+
+    // Suspicion level at nowMs; 0 until the first heartbeat arrived
+    public synchronized double phi(long nowMs) {
+        if (lastHeartbeat < 0) {
+            return 0;
+        }
+        double mean = (double) sum / count;
+        double variance = (double) sumOfSquares / count - mean * mean;
+        double stdDev = Math.max(Math.sqrt(Math.max(0, variance)), minStdDevMs);
+        double y = (nowMs - lastHeartbeat - mean) / stdDev;
+        // Logistic approximation of the normal CDF tail, as used by Akka and Cassandra
+        double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        double pLater = y > 0 ? e / (1 + e) : 1 - 1 / (1 + e);
+        return -Math.log10(Math.max(pLater, 1e-300));
+    }
+
+    public synchronized long getLastHeartbeat() {
+        return lastHeartbeat;
+    }
+}
@@ -0,0 +1,128 @@
+package server;
+
+import ShareMarket.Server;
+import ShareMarket.ServerHelper;
+import org.omg.CORBA.COMM_FAILURE;
+import org.omg.CORBA.OBJECT_NOT_EXIST;
+import org.omg.CORBA.ORB;
+import org.omg.CosNaming.NameComponent;
+import org.omg.CosNaming.NamingContext;
+import org.omg.CosNaming.NamingContextHelper;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches narrowed references to the other markets' servants by their naming
+ * service name, so a cross-market call does not resolve NameService and the
+ * name on every request. A reference is dropped when a call on it fails with
+ * COMM_FAILURE or OBJECT_NOT_EXIST and is then re-resolved in the background.
+ */
+public class RemoteServerCache {
+    private static final long REFRESH_RETRY_MS = 2000;
+
+    private final Supplier<ORB> orbSupplier;
+    private final Map<String, Server> references = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> refreshing = new ConcurrentHashMap<>();
+    private volatile NamingContext namingContext;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "remote-ref-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public RemoteServerCache(Supplier<ORB> orbSupplier) {
+        this.orbSupplier = orbSupplier;
+    }
+
+    // Returns the cached reference, resolving it on a miss; null if it cannot be resolved
+    public Server get(String marketName) {
+        Server cached = references.get(marketName);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        try {
+            Server resolved = resolve(marketName);
+            references.put(marketName, resolved);
+            return resolved;
+        } catch (Exception e) {
+            System.err.println("ERROR: Could not get remote server reference for " + marketName);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Drops the cached reference if the failure means it is stale, and
+     * schedules a background re-resolution. Other failures are ignored.
+     */
+    public void onFailure(String marketName, Throwable failure) {
+        if (!(failure instanceof COMM_FAILURE) && !(failure instanceof OBJECT_NOT_EXIST)) {
+            return;
+        }
+        if (references.remove(marketName) != null) {
+            invalidations.incrementAndGet();
+        }
+        // The naming context itself may live in a restarted orbd
+        namingContext = null;
+        scheduleRefresh(marketName, 0);
+    }
+
+    private void scheduleRefresh(String marketName, long delayMs) {
+        if (delayMs == 0 && refreshing.putIfAbsent(marketName, Boolean.TRUE) != null) {
+            return; // already being refreshed
+        }
+        refresher.schedule(() -> {
+            if (references.containsKey(marketName)) {
+                refreshing.remove(marketName);
+                return;
+            }
+            try {
+                references.put(marketName, resolve(marketName));
+                refreshing.remove(marketName);
+            } catch (Exception e) {
+                // Market still down, keep trying until it comes back
+                scheduleRefresh(marketName, REFRESH_RETRY_MS);
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private Server resolve(String marketName) throws Exception {
+        NamingContext context = namingContext;
+        if (context == null) {
+            org.omg.CORBA.Object objRef = orbSupplier.get().resolve_initial_references("NameService");
+            context = NamingContextHelper.narrow(objRef);
+            namingContext = context;
+        }
+        NameComponent[] name = { new NameComponent(marketName, "") };
+        return ServerHelper.narrow(context.resolve(name));
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public String getStats() {
+        long h = hits.get();
+        long m = misses.get();
+        long total = h + m;
+        return "Remote reference cache: hits=" + h + ", misses=" + m + ", invalidations=" + invalidations.get() +
+                ", hitRate=" + (total == 0 ? "n/a" : String.format("%.1f%%", 100.0 * h / total));
+    }
+}
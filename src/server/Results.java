@@ -0,0 +1,50 @@
+package server;
+
+import ShareMarket.Order;
+import ShareMarket.Result;
+import ShareMarket.ResultCode;
+
+import java.util.Arrays;
+
+/**
+ * Builds the typed {@link Result}s the servant returns. Wording is left to
+ * the clients; a result only carries the code, the market that handled the
+ * request and what the caller cannot know from its own request. CORBA
+ * cannot marshal null strings, so missing fields are sent empty.
+ */
+public final class Results {
+    private Results() {
+    }
+
+    public static Result of(ResultCode code, String market) {
+        return new Result(code, orEmpty(market), "", 0, "");
+    }
+
+    public static Result success(String market, String shareType, int quantity) {
+        return new Result(ResultCode.SUCCESS, orEmpty(market), orEmpty(shareType), quantity, "");
+    }
+
+    // A swap whose commit got no reply and is being resolved in the background
+    public static Result pending(String market, String shareType, int quantity) {
+        return new Result(ResultCode.PENDING, orEmpty(market), orEmpty(shareType), quantity, "");
+    }
+
+    public static Result failed(String market, String detail) {
+        return new Result(ResultCode.FAILED, orEmpty(market), "", 0, orEmpty(detail));
+    }
+
+    public static boolean isSuccess(Result result) {
+        return result.code.value() == ResultCode._SUCCESS;
+    }
+
+    // The same result for every order of a batch leg
+    public static Result[] forOrders(Order[] orders, Result result) {
+        Result[] results = new Result[orders.length];
+        Arrays.fill(results, result);
+        return results;
+    }
+
+    private static String orEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -1,23 +1,29 @@
 package server;
 
 import java.io.Serializable;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 
 public class Share implements Serializable {
     private final String shareID;
     private final String shareType;
-    private int availableCapacity;
+    private final AtomicInteger availableCapacity;
     private final int totalCapacity;
-    private final Set<String> buyers;
+    // Ordinals (see BuyerRegistry) of the buyers currently holding this share
+    private final CompactBitmap buyers;
     private final String originMarket;
 
     public Share(String shareID, String shareType, int availableCapacity, String originMarket) {
+        this(shareID, shareType, availableCapacity, availableCapacity, originMarket);
+    }
+
+    // Restores a share with some of its capacity already sold, e.g. from a snapshot
+    public Share(String shareID, String shareType, int availableCapacity, int totalCapacity, String originMarket) {
         this.shareID = shareID;
         this.shareType = shareType;
-        this.availableCapacity = availableCapacity;
-        this.totalCapacity = availableCapacity;
-        this.buyers = new HashSet<>();
+        this.availableCapacity = new AtomicInteger(availableCapacity);
+        this.totalCapacity = totalCapacity;
+        this.buyers = new CompactBitmap();
         this.originMarket = originMarket;
     }
 
@@ -31,27 +37,63 @@ public class Share implements Serializable {
     }
 
     public int getAvailableCapacity() {
-        return availableCapacity;
+        return availableCapacity.get();
+    }
+
+    /**
+     * Atomically claims {@code count} units of capacity. Returns false, and
+     * leaves the capacity untouched, if fewer than {@code count} are available,
+     * so concurrent purchases can never oversell without holding any lock.
+     */
+    public boolean tryReserve(int count) {
+        if (count <= 0) {
+            return false;
+        }
+        while (true) {
+            int current = availableCapacity.get();
+            if (current < count) {
+                return false;
+            }
+            if (availableCapacity.compareAndSet(current, current - count)) {
+                return true;
+            }
+        }
+    }
+
+    // Returns previously reserved capacity to the pool
+    public void release(int count) {
+        if (count > 0) {
+            availableCapacity.addAndGet(count);
+        }
     }
 
     public void reduceCapacity(int count) {
-        this.availableCapacity -= count;
+        availableCapacity.addAndGet(-count);
     }
 
     public void increaseCapacity(int count) {
-        this.availableCapacity += count;
+        release(count);
+    }
+
+    public void addBuyer(int buyerOrdinal) {
+        buyers.add(buyerOrdinal);
+    }
+
+    public boolean hasBuyer(int buyerOrdinal) {
+        return buyers.contains(buyerOrdinal);
     }
 
-    public void addBuyer(String buyerID) {
-        buyers.add(buyerID);
+    public void removeBuyer(int buyerOrdinal) {
+        buyers.remove(buyerOrdinal);
     }
 
-    public boolean hasBuyer(String buyerID) {
-        return buyers.contains(buyerID);
+    // Number of distinct buyers holding this share
+    public int getBuyerCount() {
+        return buyers.cardinality();
     }
 
-    public void removeBuyer(String buyerID) {
-        buyers.remove(buyerID);
+    public void forEachBuyer(IntConsumer action) {
+        buyers.forEach(action);
     }
 
     public int getTotalCapacity() {
@@ -73,7 +115,7 @@ public class Share implements Serializable {
 
     @Override
     public String toString() {
-        return "[Share ID: " + shareID + ", Type: " + shareType + ", Available: " + availableCapacity +
+        return "[Share ID: " + shareID + ", Type: " + shareType + ", Available: " + availableCapacity.get() +
                 (originMarket != null ? ", Market: " + originMarket : "") + "]";
     }
 }
\ No newline at end of file
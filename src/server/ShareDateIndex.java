@@ -0,0 +1,58 @@
+package server;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Secondary index of the local shares by trading date and time slot, per
+ * share type. Keys are packed {@link ShareId}s, so "all Equity shares of
+ * 12/03/25 morning" or a date range is a sub-map lookup instead of a scan
+ * of the share database. Shares whose ID does not follow LOCTDDMMYY in upper
+ * case are not indexed.
+ */
+public class ShareDateIndex {
+    private final Map<String, ConcurrentSkipListMap<Long, Share>> byType = new ConcurrentHashMap<>();
+
+    public void add(Share share) {
+        ShareId id = ShareId.parse(share.getShareID());
+        if (id != null) {
+            byType.computeIfAbsent(share.getShareType(), k -> new ConcurrentSkipListMap<>()).put(id.pack(), share);
+        }
+    }
+
+    public void remove(Share share) {
+        ShareId id = ShareId.parse(share.getShareID());
+        ConcurrentSkipListMap<Long, Share> shares = byType.get(share.getShareType());
+        if (id != null && shares != null) {
+            shares.remove(id.pack(), share);
+        }
+    }
+
+    /**
+     * Shares of the type traded between the two dates (inclusive), ordered by
+     * date, slot and location. A null slot matches all slots; a null date
+     * gives no shares.
+     */
+    public List<Share> find(String shareType, LocalDate from, LocalDate to, ShareId.TimeSlot slot) {
+        List<Share> result = new ArrayList<>();
+        ConcurrentSkipListMap<Long, Share> shares = shareType == null ? null : byType.get(shareType);
+        if (shares == null || from == null || to == null || from.isAfter(to)) {
+            return result;
+        }
+        if (slot == null) {
+            result.addAll(shares.subMap(ShareId.lowestKey(from, null), true,
+                    ShareId.highestKey(to, null), true).values());
+            return result;
+        }
+        // One contiguous key range per day when a single slot is requested
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            result.addAll(shares.subMap(ShareId.lowestKey(day, slot), true,
+                    ShareId.highestKey(day, slot), true).values());
+        }
+        return result;
+    }
+}
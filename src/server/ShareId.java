@@ -0,0 +1,160 @@
+package server;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * Parsed form of a LOCTDDMMYY share ID, e.g. NYKM100325: location code
+ * (NYK, LON, TOK), time slot (M, A, E) and trading date. Only upper-case
+ * codes parse: share IDs are case-sensitive keys, and "nykm100325" must not
+ * pack to the same long as "NYKM100325". Routing by {@link #marketOf(String)}
+ * still accepts either case.
+ *
+ * {@link #pack()} folds the ID into a long that sorts by date, then time
+ * slot, then location, so a date or date range maps to one contiguous key
+ * range of {@link ShareDateIndex}.
+ */
+public final class ShareId {
+
+    public enum TimeSlot {
+        MORNING('M'), AFTERNOON('A'), EVENING('E');
+
+        private final char code;
+
+        TimeSlot(char code) {
+            this.code = code;
+        }
+
+        public char getCode() {
+            return code;
+        }
+
+        static TimeSlot fromCode(char code) {
+            for (TimeSlot slot : values()) {
+                if (slot.code == code) {
+                    return slot;
+                }
+            }
+            return null;
+        }
+
+        /** The slot of a one-letter code (M, A, E), or null. */
+        public static TimeSlot parse(String code) {
+            return code == null || code.length() != 1 ? null : fromCode(code.charAt(0));
+        }
+    }
+
+    private static final String[] LOCATIONS = {"NYK", "LON", "TOK"};
+    private static final String[] MARKETS = {"NewYork", "London", "Tokyo"};
+
+    // Packed layout, high to low: date (16 bits: yy 7, mm 4, dd 5), slot (2), location (2)
+    private static final int LOCATION_BITS = 2;
+    private static final int SLOT_BITS = 2;
+
+    private final int location;
+    private final TimeSlot slot;
+    private final LocalDate date;
+
+    private ShareId(int location, TimeSlot slot, LocalDate date) {
+        this.location = location;
+        this.slot = slot;
+        this.date = date;
+    }
+
+    /** Parses a share ID, or returns null if it does not follow LOCTDDMMYY in upper case. */
+    public static ShareId parse(String shareID) {
+        if (shareID == null || shareID.length() != 10) {
+            return null;
+        }
+        int location = locationIndex(shareID, false);
+        TimeSlot slot = TimeSlot.fromCode(shareID.charAt(3));
+        LocalDate date = parseDate(shareID.substring(4));
+        if (location < 0 || slot == null || date == null) {
+            return null;
+        }
+        return new ShareId(location, slot, date);
+    }
+
+    /** Parses a DDMMYY trading date, or returns null if it is not one. */
+    public static LocalDate parseDate(String ddmmyy) {
+        if (ddmmyy == null || ddmmyy.length() != 6) {
+            return null;
+        }
+        int day = digits(ddmmyy, 0);
+        int month = digits(ddmmyy, 2);
+        int year = digits(ddmmyy, 4);
+        if (day < 0 || month < 0 || year < 0) {
+            return null;
+        }
+        try {
+            return LocalDate.of(2000 + year, month, day);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /** Market name (NewYork, London, Tokyo) from the ID's location code in either case, or null. */
+    public static String marketOf(String shareID) {
+        int location = shareID == null || shareID.length() < 3 ? -1 : locationIndex(shareID, true);
+        return location < 0 ? null : MARKETS[location];
+    }
+
+    private static int locationIndex(String shareID, boolean ignoreCase) {
+        for (int i = 0; i < LOCATIONS.length; i++) {
+            if (shareID.regionMatches(ignoreCase, 0, LOCATIONS[i], 0, 3)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int digits(String s, int at) {
+        char high = s.charAt(at);
+        char low = s.charAt(at + 1);
+        if (high < '0' || high > '9' || low < '0' || low > '9') {
+            return -1;
+        }
+        return (high - '0') * 10 + (low - '0');
+    }
+
+    // Date part of the packed key, ordered like the dates themselves
+    static long packDate(LocalDate date) {
+        return (date.getYear() - 2000) << 9 | date.getMonthValue() << 5 | date.getDayOfMonth();
+    }
+
+    static long pack(LocalDate date, TimeSlot slot, int location) {
+        return (packDate(date) << SLOT_BITS | slot.ordinal()) << LOCATION_BITS | location;
+    }
+
+    // Smallest packed key of the given date (and slot, if not null)
+    static long lowestKey(LocalDate date, TimeSlot slot) {
+        return pack(date, slot == null ? TimeSlot.MORNING : slot, 0);
+    }
+
+    // Largest packed key of the given date (and slot, if not null)
+    static long highestKey(LocalDate date, TimeSlot slot) {
+        return pack(date, slot == null ? TimeSlot.EVENING : slot, (1 << LOCATION_BITS) - 1);
+    }
+
+    public long pack() {
+        return pack(date, slot, location);
+    }
+
+    public String getMarket() {
+        return MARKETS[location];
+    }
+
+    public TimeSlot getTimeSlot() {
+        return slot;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s%c%02d%02d%02d", LOCATIONS[location], slot.getCode(),
+                date.getDayOfMonth(), date.getMonthValue(), date.getYear() - 2000);
+    }
+}
@@ -0,0 +1,58 @@
+package server;
+
+/**
+ * Canonical identity of a share (type + ID). Instances are interned by
+ * {@link ShareKeyRegistry}, so each share has exactly one key object that
+ * every buyer's holdings and every lock lookup share; the hash code and the
+ * "type-id" display form are computed once.
+ */
+public final class ShareKey {
+    private final String shareType;
+    private final String shareID;
+    private final int ordinal;
+    private final int hash;
+    private final String text;
+
+    ShareKey(String shareType, String shareID, int ordinal) {
+        this.shareType = shareType;
+        this.shareID = shareID;
+        this.ordinal = ordinal;
+        this.hash = 31 * shareType.hashCode() + shareID.hashCode();
+        this.text = shareType + "-" + shareID;
+    }
+
+    public String getShareType() {
+        return shareType;
+    }
+
+    public String getShareID() {
+        return shareID;
+    }
+
+    // Dense number assigned in interning order, unique within the market
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ShareKey)) {
+            return false;
+        }
+        ShareKey other = (ShareKey) o;
+        return shareType.equals(other.shareType) && shareID.equals(other.shareID);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
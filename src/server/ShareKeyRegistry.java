@@ -0,0 +1,71 @@
+package server;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-market registry of interned {@link ShareKey}s. Lookups go through a
+ * type -> ID map, so finding the key of an existing share allocates nothing.
+ * Keys are never removed: a removed share's key stays valid for holdings
+ * that still refer to it and is reused if the share is added again.
+ */
+public class ShareKeyRegistry {
+    private final Map<String, Map<String, ShareKey>> keys = new ConcurrentHashMap<>();
+    // shareID -> keys of every share type using that ID (almost always one)
+    private final Map<String, ShareKey[]> byShareID = new ConcurrentHashMap<>();
+    private static final ShareKey[] NONE = new ShareKey[0];
+
+    private volatile ShareKey[] byOrdinal = new ShareKey[1024];
+    private int size;
+
+    // Returns the canonical key, or null if the share was never registered
+    public ShareKey find(String shareType, String shareID) {
+        Map<String, ShareKey> ofType = keys.get(shareType);
+        return ofType == null ? null : ofType.get(shareID);
+    }
+
+    // Keys registered under shareID across all share types, empty if none
+    public ShareKey[] findByShareID(String shareID) {
+        ShareKey[] found = byShareID.get(shareID);
+        return found == null ? NONE : found;
+    }
+
+    // Returns the canonical key, registering it on first use
+    public ShareKey intern(String shareType, String shareID) {
+        ShareKey key = find(shareType, shareID);
+        return key != null ? key : register(shareType, shareID);
+    }
+
+    private synchronized ShareKey register(String shareType, String shareID) {
+        Map<String, ShareKey> ofType = keys.computeIfAbsent(shareType, k -> new ConcurrentHashMap<>());
+        ShareKey key = ofType.get(shareID);
+        if (key != null) {
+            return key; // lost the race to another thread
+        }
+        key = new ShareKey(shareType, shareID, size);
+        ShareKey[] table = byOrdinal;
+        if (size == table.length) {
+            ShareKey[] grown = new ShareKey[table.length * 2];
+            System.arraycopy(table, 0, grown, 0, table.length);
+            table = grown;
+        }
+        table[size++] = key;
+        byOrdinal = table;
+        ofType.put(shareID, key);
+        ShareKey[] sameID = findByShareID(shareID);
+        ShareKey[] extended = Arrays.copyOf(sameID, sameID.length + 1);
+        extended[sameID.length] = key;
+        byShareID.put(shareID, extended);
+        return key;
+    }
+
+    public ShareKey byOrdinal(int ordinal) {
+        ShareKey[] table = byOrdinal;
+        return ordinal < table.length ? table[ordinal] : null;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
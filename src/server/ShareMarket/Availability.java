@@ -0,0 +1,26 @@
+package ShareMarket;
+
+
+/**
+* ShareMarket/Availability.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+public final class Availability implements org.omg.CORBA.portable.IDLEntity
+{
+  public String shareID = null;
+  public int available = (int)0;
+
+  public Availability ()
+  {
+  } // ctor
+
+  public Availability (String _shareID, int _available)
+  {
+    shareID = _shareID;
+    available = _available;
+  } // ctor
+
+} // class Availability
@@ -0,0 +1,38 @@
+package ShareMarket;
+
+/**
+* ShareMarket/AvailabilityHolder.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+public final class AvailabilityHolder implements org.omg.CORBA.portable.Streamable
+{
+  public ShareMarket.Availability value = null;
+
+  public AvailabilityHolder ()
+  {
+  }
+
+  public AvailabilityHolder (ShareMarket.Availability initialValue)
+  {
+    value = initialValue;
+  }
+
+  public void _read (org.omg.CORBA.portable.InputStream i)
+  {
+    value = ShareMarket.AvailabilityHelper.read (i);
+  }
+
+  public void _write (org.omg.CORBA.portable.OutputStream o)
+  {
+    ShareMarket.AvailabilityHelper.write (o, value);
+  }
+
+  public org.omg.CORBA.TypeCode _type ()
+  {
+    return ShareMarket.AvailabilityHelper.type ();
+  }
+
+}
@@ -0,0 +1,39 @@
+package ShareMarket;
+
+
+/**
+* ShareMarket/AvailabilityReportHolder.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+public final class AvailabilityReportHolder implements org.omg.CORBA.portable.Streamable
+{
+  public ShareMarket.MarketAvailability value[] = null;
+
+  public AvailabilityReportHolder ()
+  {
+  }
+
+  public AvailabilityReportHolder (ShareMarket.MarketAvailability[] initialValue)
+  {
+    value = initialValue;
+  }
+
+  public void _read (org.omg.CORBA.portable.InputStream i)
+  {
+    value = ShareMarket.AvailabilityReportHelper.read (i);
+  }
+
+  public void _write (org.omg.CORBA.portable.OutputStream o)
+  {
+    ShareMarket.AvailabilityReportHelper.write (o, value);
+  }
+
+  public org.omg.CORBA.TypeCode _type ()
+  {
+    return ShareMarket.AvailabilityReportHelper.type ();
+  }
+
+}
@@ -0,0 +1,28 @@
+package ShareMarket;
+
+
+/**
+* ShareMarket/Holding.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+public final class Holding implements org.omg.CORBA.portable.IDLEntity
+{
+  public String shareID = null;
+  public String shareType = null;
+  public int quantity = (int)0;
+
+  public Holding ()
+  {
+  } // ctor
+
+  public Holding (String _shareID, String _shareType, int _quantity)
+  {
+    shareID = _shareID;
+    shareType = _shareType;
+    quantity = _quantity;
+  } // ctor
+
+} // class Holding
@@ -0,0 +1,38 @@
+package ShareMarket;
+
+/**
+* ShareMarket/HoldingHolder.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+public final class HoldingHolder implements org.omg.CORBA.portable.Streamable
+{
+  public ShareMarket.Holding value = null;
+
+  public HoldingHolder ()
+  {
+  }
+
+  public HoldingHolder (ShareMarket.Holding initialValue)
+  {
+    value = initialValue;
+  }
+
+  public void _read (org.omg.CORBA.portable.InputStream i)
+  {
+    value = ShareMarket.HoldingHelper.read (i);
+  }
+
+  public void _write (org.omg.CORBA.portable.OutputStream o)
+  {
+    ShareMarket.HoldingHelper.write (o, value);
+  }
+
+  public org.omg.CORBA.TypeCode _type ()
+  {
+    return ShareMarket.HoldingHelper.type ();
+  }
+
+}
@@ -0,0 +1,39 @@
+package ShareMarket;
+
+
+/**
+* ShareMarket/HoldingListHolder.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+public final class HoldingListHolder implements org.omg.CORBA.portable.Streamable
+{
+  public ShareMarket.Holding value[] = null;
+
+  public HoldingListHolder ()
+  {
+  }
+
+  public HoldingListHolder (ShareMarket.Holding[] initialValue)
+  {
+    value = initialValue;
+  }
+
+  public void _read (org.omg.CORBA.portable.InputStream i)
+  {
+    value = ShareMarket.HoldingListHelper.read (i);
+  }
+
+  public void _write (org.omg.CORBA.portable.OutputStream o)
+  {
+    ShareMarket.HoldingListHelper.write (o, value);
+  }
+
+  public org.omg.CORBA.TypeCode _type ()
+  {
+    return ShareMarket.HoldingListHelper.type ();
+  }
+
+}
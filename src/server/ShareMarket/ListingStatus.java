@@ -0,0 +1,44 @@
+package ShareMarket;
+
+
+/**
+* ShareMarket/ListingStatus.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+public class ListingStatus implements org.omg.CORBA.portable.IDLEntity
+{
+  private        int __value;
+  private static int __size = 4;
+  private static ShareMarket.ListingStatus[] __array = new ShareMarket.ListingStatus [__size];
+
+  public static final int _COMPLETE = 0;
+  public static final ShareMarket.ListingStatus COMPLETE = new ShareMarket.ListingStatus(_COMPLETE);
+  public static final int _PARTIAL = 1;
+  public static final ShareMarket.ListingStatus PARTIAL = new ShareMarket.ListingStatus(_PARTIAL);
+  public static final int _UNAVAILABLE = 2;
+  public static final ShareMarket.ListingStatus UNAVAILABLE = new ShareMarket.ListingStatus(_UNAVAILABLE);
+  public static final int _NO_RESPONSE = 3;
+  public static final ShareMarket.ListingStatus NO_RESPONSE = new ShareMarket.ListingStatus(_NO_RESPONSE);
+
+  public int value ()
+  {
+    return __value;
+  }
+
+  public static ShareMarket.ListingStatus from_int (int value)
+  {
+    if (value >= 0 && value < __size)
+      return __array[value];
+    else
+      throw new org.omg.CORBA.BAD_PARAM ();
+  }
+
+  protected ListingStatus (int value)
+  {
+    __value = value;
+    __array[__value] = this;
+  }
+} // class ListingStatus
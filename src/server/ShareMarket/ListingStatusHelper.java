@@ -0,0 +1,53 @@
+package ShareMarket;
+
+
+/**
+* ShareMarket/ListingStatusHelper.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+abstract public class ListingStatusHelper
+{
+  private static String  _id = "IDL:ShareMarket/ListingStatus:1.0";
+
+  public static void insert (org.omg.CORBA.Any a, ShareMarket.ListingStatus that)
+  {
+    org.omg.CORBA.portable.OutputStream out = a.create_output_stream ();
+    a.type (type ());
+    write (out, that);
+    a.read_value (out.create_input_stream (), type ());
+  }
+
+  public static ShareMarket.ListingStatus extract (org.omg.CORBA.Any a)
+  {
+    return read (a.create_input_stream ());
+  }
+
+  private static org.omg.CORBA.TypeCode __typeCode = null;
+  synchronized public static org.omg.CORBA.TypeCode type ()
+  {
+    if (__typeCode == null)
+    {
+      __typeCode = org.omg.CORBA.ORB.init ().create_enum_tc (ShareMarket.ListingStatusHelper.id (), "ListingStatus", new String[] { "COMPLETE", "PARTIAL", "UNAVAILABLE", "NO_RESPONSE"} );
+    }
+    return __typeCode;
+  }
+
+  public static String id ()
+  {
+    return _id;
+  }
+
+  public static ShareMarket.ListingStatus read (org.omg.CORBA.portable.InputStream istream)
+  {
+    return ShareMarket.ListingStatus.from_int (istream.read_long ());
+  }
+
+  public static void write (org.omg.CORBA.portable.OutputStream ostream, ShareMarket.ListingStatus value)
+  {
+    ostream.write_long (value.value ());
+  }
+
+}
@@ -0,0 +1,38 @@
+package ShareMarket;
+
+/**
+* ShareMarket/ListingStatusHolder.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+public final class ListingStatusHolder implements org.omg.CORBA.portable.Streamable
+{
+  public ShareMarket.ListingStatus value = null;
+
+  public ListingStatusHolder ()
+  {
+  }
+
+  public ListingStatusHolder (ShareMarket.ListingStatus initialValue)
+  {
+    value = initialValue;
+  }
+
+  public void _read (org.omg.CORBA.portable.InputStream i)
+  {
+    value = ShareMarket.ListingStatusHelper.read (i);
+  }
+
+  public void _write (org.omg.CORBA.portable.OutputStream o)
+  {
+    ShareMarket.ListingStatusHelper.write (o, value);
+  }
+
+  public org.omg.CORBA.TypeCode _type ()
+  {
+    return ShareMarket.ListingStatusHelper.type ();
+  }
+
+}
@@ -0,0 +1,28 @@
+package ShareMarket;
+
+
+/**
+* ShareMarket/MarketAvailability.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+public final class MarketAvailability implements org.omg.CORBA.portable.IDLEntity
+{
+  public String market = null;
+  public ShareMarket.ListingStatus status = null;
+  public ShareMarket.Availability shares[] = null;
+
+  public MarketAvailability ()
+  {
+  } // ctor
+
+  public MarketAvailability (String _market, ShareMarket.ListingStatus _status, ShareMarket.Availability[] _shares)
+  {
+    market = _market;
+    status = _status;
+    shares = _shares;
+  } // ctor
+
+} // class MarketAvailability
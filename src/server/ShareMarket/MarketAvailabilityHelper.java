@@ -0,0 +1,91 @@
+package ShareMarket;
+
+
+/**
+* ShareMarket/MarketAvailabilityHelper.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+abstract public class MarketAvailabilityHelper
+{
+  private static String  _id = "IDL:ShareMarket/MarketAvailability:1.0";
+
+  public static void insert (org.omg.CORBA.Any a, ShareMarket.MarketAvailability that)
+  {
+    org.omg.CORBA.portable.OutputStream out = a.create_output_stream ();
+    a.type (type ());
+    write (out, that);
+    a.read_value (out.create_input_stream (), type ());
+  }
+
+  public static ShareMarket.MarketAvailability extract (org.omg.CORBA.Any a)
+  {
+    return read (a.create_input_stream ());
+  }
+
+  private static org.omg.CORBA.TypeCode __typeCode = null;
+  private static boolean __active = false;
+  synchronized public static org.omg.CORBA.TypeCode type ()
+  {
+    if (__typeCode == null)
+    {
+      synchronized (org.omg.CORBA.TypeCode.class)
+      {
+        if (__typeCode == null)
+        {
+          if (__active)
+          {
+            return org.omg.CORBA.ORB.init().create_recursive_tc ( _id );
+          }
+          __active = true;
+          org.omg.CORBA.StructMember[] _members0 = new org.omg.CORBA.StructMember [3];
+          org.omg.CORBA.TypeCode _tcOf_members0 = null;
+          _tcOf_members0 = org.omg.CORBA.ORB.init ().create_string_tc (0);
+          _members0[0] = new org.omg.CORBA.StructMember (
+            "market",
+            _tcOf_members0,
+            null);
+          _tcOf_members0 = ShareMarket.ListingStatusHelper.type ();
+          _members0[1] = new org.omg.CORBA.StructMember (
+            "status",
+            _tcOf_members0,
+            null);
+          _tcOf_members0 = ShareMarket.AvailabilityHelper.type ();
+          _tcOf_members0 = org.omg.CORBA.ORB.init ().create_sequence_tc (0, _tcOf_members0);
+          _tcOf_members0 = org.omg.CORBA.ORB.init ().create_alias_tc (ShareMarket.AvailabilityListHelper.id (), "AvailabilityList", _tcOf_members0);
+          _members0[2] = new org.omg.CORBA.StructMember (
+            "shares",
+            _tcOf_members0,
+            null);
+          __typeCode = org.omg.CORBA.ORB.init ().create_struct_tc (ShareMarket.MarketAvailabilityHelper.id (), "MarketAvailability", _members0);
+          __active = false;
+        }
+      }
+    }
+    return __typeCode;
+  }
+
+  public static String id ()
+  {
+    return _id;
+  }
+
+  public static ShareMarket.MarketAvailability read (org.omg.CORBA.portable.InputStream istream)
+  {
+    ShareMarket.MarketAvailability value = new ShareMarket.MarketAvailability ();
+    value.market = istream.read_string ();
+    value.status = ShareMarket.ListingStatusHelper.read (istream);
+    value.shares = ShareMarket.AvailabilityListHelper.read (istream);
+    return value;
+  }
+
+  public static void write (org.omg.CORBA.portable.OutputStream ostream, ShareMarket.MarketAvailability value)
+  {
+    ostream.write_string (value.market);
+    ShareMarket.ListingStatusHelper.write (ostream, value.status);
+    ShareMarket.AvailabilityListHelper.write (ostream, value.shares);
+  }
+
+}
@@ -0,0 +1,38 @@
+package ShareMarket;
+
+/**
+* ShareMarket/MarketAvailabilityHolder.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+public final class MarketAvailabilityHolder implements org.omg.CORBA.portable.Streamable
+{
+  public ShareMarket.MarketAvailability value = null;
+
+  public MarketAvailabilityHolder ()
+  {
+  }
+
+  public MarketAvailabilityHolder (ShareMarket.MarketAvailability initialValue)
+  {
+    value = initialValue;
+  }
+
+  public void _read (org.omg.CORBA.portable.InputStream i)
+  {
+    value = ShareMarket.MarketAvailabilityHelper.read (i);
+  }
+
+  public void _write (org.omg.CORBA.portable.OutputStream o)
+  {
+    ShareMarket.MarketAvailabilityHelper.write (o, value);
+  }
+
+  public org.omg.CORBA.TypeCode _type ()
+  {
+    return ShareMarket.MarketAvailabilityHelper.type ();
+  }
+
+}
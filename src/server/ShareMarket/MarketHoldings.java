@@ -0,0 +1,26 @@
+package ShareMarket;
+
+
+/**
+* ShareMarket/MarketHoldings.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+public final class MarketHoldings implements org.omg.CORBA.portable.IDLEntity
+{
+  public String market = null;
+  public ShareMarket.Holding holdings[] = null;
+
+  public MarketHoldings ()
+  {
+  } // ctor
+
+  public MarketHoldings (String _market, ShareMarket.Holding[] _holdings)
+  {
+    market = _market;
+    holdings = _holdings;
+  } // ctor
+
+} // class MarketHoldings
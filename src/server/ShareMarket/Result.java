@@ -0,0 +1,38 @@
+package ShareMarket;
+
+
+/**
+* ShareMarket/Result.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+public final class Result implements org.omg.CORBA.portable.IDLEntity
+{
+  public ShareMarket.ResultCode code = null;
+  public String market = null;
+
+  // market that handled the request
+  public String shareType = null;
+
+  // type traded, for sells and swaps looked up from the holding
+  public int quantity = (int)0;
+
+  // shares bought, sold or swapped
+  public String detail = null;
+
+  public Result ()
+  {
+  } // ctor
+
+  public Result (ShareMarket.ResultCode _code, String _market, String _shareType, int _quantity, String _detail)
+  {
+    code = _code;
+    market = _market;
+    shareType = _shareType;
+    quantity = _quantity;
+    detail = _detail;
+  } // ctor
+
+} // class Result
@@ -0,0 +1,62 @@
+package ShareMarket;
+
+
+/**
+* ShareMarket/ResultCode.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+
+// Outcome of a request; clients turn it into text, servers only compare codes
+public class ResultCode implements org.omg.CORBA.portable.IDLEntity
+{
+  private        int __value;
+  private static int __size = 12;
+  private static ShareMarket.ResultCode[] __array = new ShareMarket.ResultCode [__size];
+
+  public static final int _SUCCESS = 0;
+  public static final ShareMarket.ResultCode SUCCESS = new ShareMarket.ResultCode(_SUCCESS);
+  public static final int _PENDING = 1;
+  public static final ShareMarket.ResultCode PENDING = new ShareMarket.ResultCode(_PENDING);
+  public static final int _NOT_FOUND = 2;
+  public static final ShareMarket.ResultCode NOT_FOUND = new ShareMarket.ResultCode(_NOT_FOUND);
+  public static final int _ALREADY_EXISTS = 3;
+  public static final ShareMarket.ResultCode ALREADY_EXISTS = new ShareMarket.ResultCode(_ALREADY_EXISTS);
+  public static final int _INVALID_SHARE_TYPE = 4;
+  public static final ShareMarket.ResultCode INVALID_SHARE_TYPE = new ShareMarket.ResultCode(_INVALID_SHARE_TYPE);
+  public static final int _NOT_ENOUGH_AVAILABLE = 5;
+  public static final ShareMarket.ResultCode NOT_ENOUGH_AVAILABLE = new ShareMarket.ResultCode(_NOT_ENOUGH_AVAILABLE);
+  public static final int _NOT_OWNED = 6;
+  public static final ShareMarket.ResultCode NOT_OWNED = new ShareMarket.ResultCode(_NOT_OWNED);
+  public static final int _INSUFFICIENT_HOLDING = 7;
+  public static final ShareMarket.ResultCode INSUFFICIENT_HOLDING = new ShareMarket.ResultCode(_INSUFFICIENT_HOLDING);
+  public static final int _TYPE_MISMATCH = 8;
+  public static final ShareMarket.ResultCode TYPE_MISMATCH = new ShareMarket.ResultCode(_TYPE_MISMATCH);
+  public static final int _UNKNOWN_MARKET = 9;
+  public static final ShareMarket.ResultCode UNKNOWN_MARKET = new ShareMarket.ResultCode(_UNKNOWN_MARKET);
+  public static final int _MARKET_UNAVAILABLE = 10;
+  public static final ShareMarket.ResultCode MARKET_UNAVAILABLE = new ShareMarket.ResultCode(_MARKET_UNAVAILABLE);
+  public static final int _FAILED = 11;
+  public static final ShareMarket.ResultCode FAILED = new ShareMarket.ResultCode(_FAILED);
+
+  public int value ()
+  {
+    return __value;
+  }
+
+  public static ShareMarket.ResultCode from_int (int value)
+  {
+    if (value >= 0 && value < __size)
+      return __array[value];
+    else
+      throw new org.omg.CORBA.BAD_PARAM ();
+  }
+
+  protected ResultCode (int value)
+  {
+    __value = value;
+    __array[__value] = this;
+  }
+} // class ResultCode
@@ -0,0 +1,55 @@
+package ShareMarket;
+
+
+/**
+* ShareMarket/ResultCodeHelper.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+
+// Outcome of a request; clients turn it into text, servers only compare codes
+abstract public class ResultCodeHelper
+{
+  private static String  _id = "IDL:ShareMarket/ResultCode:1.0";
+
+  public static void insert (org.omg.CORBA.Any a, ShareMarket.ResultCode that)
+  {
+    org.omg.CORBA.portable.OutputStream out = a.create_output_stream ();
+    a.type (type ());
+    write (out, that);
+    a.read_value (out.create_input_stream (), type ());
+  }
+
+  public static ShareMarket.ResultCode extract (org.omg.CORBA.Any a)
+  {
+    return read (a.create_input_stream ());
+  }
+
+  private static org.omg.CORBA.TypeCode __typeCode = null;
+  synchronized public static org.omg.CORBA.TypeCode type ()
+  {
+    if (__typeCode == null)
+    {
+      __typeCode = org.omg.CORBA.ORB.init ().create_enum_tc (ShareMarket.ResultCodeHelper.id (), "ResultCode", new String[] { "SUCCESS", "PENDING", "NOT_FOUND", "ALREADY_EXISTS", "INVALID_SHARE_TYPE", "NOT_ENOUGH_AVAILABLE", "NOT_OWNED", "INSUFFICIENT_HOLDING", "TYPE_MISMATCH", "UNKNOWN_MARKET", "MARKET_UNAVAILABLE", "FAILED"} );
+    }
+    return __typeCode;
+  }
+
+  public static String id ()
+  {
+    return _id;
+  }
+
+  public static ShareMarket.ResultCode read (org.omg.CORBA.portable.InputStream istream)
+  {
+    return ShareMarket.ResultCode.from_int (istream.read_long ());
+  }
+
+  public static void write (org.omg.CORBA.portable.OutputStream ostream, ShareMarket.ResultCode value)
+  {
+    ostream.write_long (value.value ());
+  }
+
+}
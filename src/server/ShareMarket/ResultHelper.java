@@ -0,0 +1,103 @@
+package ShareMarket;
+
+
+/**
+* ShareMarket/ResultHelper.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+abstract public class ResultHelper
+{
+  private static String  _id = "IDL:ShareMarket/Result:1.0";
+
+  public static void insert (org.omg.CORBA.Any a, ShareMarket.Result that)
+  {
+    org.omg.CORBA.portable.OutputStream out = a.create_output_stream ();
+    a.type (type ());
+    write (out, that);
+    a.read_value (out.create_input_stream (), type ());
+  }
+
+  public static ShareMarket.Result extract (org.omg.CORBA.Any a)
+  {
+    return read (a.create_input_stream ());
+  }
+
+  private static org.omg.CORBA.TypeCode __typeCode = null;
+  private static boolean __active = false;
+  synchronized public static org.omg.CORBA.TypeCode type ()
+  {
+    if (__typeCode == null)
+    {
+      synchronized (org.omg.CORBA.TypeCode.class)
+      {
+        if (__typeCode == null)
+        {
+          if (__active)
+          {
+            return org.omg.CORBA.ORB.init().create_recursive_tc ( _id );
+          }
+          __active = true;
+          org.omg.CORBA.StructMember[] _members0 = new org.omg.CORBA.StructMember [5];
+          org.omg.CORBA.TypeCode _tcOf_members0 = null;
+          _tcOf_members0 = ShareMarket.ResultCodeHelper.type ();
+          _members0[0] = new org.omg.CORBA.StructMember (
+            "code",
+            _tcOf_members0,
+            null);
+          _tcOf_members0 = org.omg.CORBA.ORB.init ().create_string_tc (0);
+          _members0[1] = new org.omg.CORBA.StructMember (
+            "market",
+            _tcOf_members0,
+            null);
+          _tcOf_members0 = org.omg.CORBA.ORB.init ().create_string_tc (0);
+          _members0[2] = new org.omg.CORBA.StructMember (
+            "shareType",
+            _tcOf_members0,
+            null);
+          _tcOf_members0 = org.omg.CORBA.ORB.init ().get_primitive_tc (org.omg.CORBA.TCKind.tk_long);
+          _members0[3] = new org.omg.CORBA.StructMember (
+            "quantity",
+            _tcOf_members0,
+            null);
+          _tcOf_members0 = org.omg.CORBA.ORB.init ().create_string_tc (0);
+          _members0[4] = new org.omg.CORBA.StructMember (
+            "detail",
+            _tcOf_members0,
+            null);
+          __typeCode = org.omg.CORBA.ORB.init ().create_struct_tc (ShareMarket.ResultHelper.id (), "Result", _members0);
+          __active = false;
+        }
+      }
+    }
+    return __typeCode;
+  }
+
+  public static String id ()
+  {
+    return _id;
+  }
+
+  public static ShareMarket.Result read (org.omg.CORBA.portable.InputStream istream)
+  {
+    ShareMarket.Result value = new ShareMarket.Result ();
+    value.code = ShareMarket.ResultCodeHelper.read (istream);
+    value.market = istream.read_string ();
+    value.shareType = istream.read_string ();
+    value.quantity = istream.read_long ();
+    value.detail = istream.read_string ();
+    return value;
+  }
+
+  public static void write (org.omg.CORBA.portable.OutputStream ostream, ShareMarket.Result value)
+  {
+    ShareMarket.ResultCodeHelper.write (ostream, value.code);
+    ostream.write_string (value.market);
+    ostream.write_string (value.shareType);
+    ostream.write_long (value.quantity);
+    ostream.write_string (value.detail);
+  }
+
+}
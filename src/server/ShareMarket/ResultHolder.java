@@ -0,0 +1,38 @@
+package ShareMarket;
+
+/**
+* ShareMarket/ResultHolder.java .
+* Generated by the IDL-to-Java compiler (portable), version "3.2"
+* from ShareMarket.idl
+* Sunday, October 18, 2026 2:47:15 AM UTC
+*/
+
+public final class ResultHolder implements org.omg.CORBA.portable.Streamable
+{
+  public ShareMarket.Result value = null;
+
+  public ResultHolder ()
+  {
+  }
+
+  public ResultHolder (ShareMarket.Result initialValue)
+  {
+    value = initialValue;
+  }
+
+  public void _read (org.omg.CORBA.portable.InputStream i)
+  {
+    value = ShareMarket.ResultHelper.read (i);
+  }
+
+  public void _write (org.omg.CORBA.portable.OutputStream o)
+  {
+    ShareMarket.ResultHelper.write (o, value);
+  }
+
+  public org.omg.CORBA.TypeCode _type ()
+  {
+    return ShareMarket.ResultHelper.type ();
+  }
+
+}
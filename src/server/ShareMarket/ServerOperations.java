@@ -5,22 +5,40 @@ package ShareMarket;
 * ShareMarket/ServerOperations.java .
 * Generated by the IDL-to-Java compiler (portable), version "3.2"
 * from ShareMarket.idl
-* Saturday, March 1, 2025 12:55:31 AM EST
+* Sunday, October 18, 2026 3:21:03 AM UTC
 */
 
 public interface ServerOperations 
 {
 
   // Admin Operations
-  String addShare (String shareID, String shareType, int capacity);
-  String removeShare (String shareID, String shareType);
-  String listShareAvailability (String shareType);
-  String purchaseRemoteShare (String buyerID, String shareID, String shareType, int shareCount, String targetMarket);
-  String sellRemoteShare (String buyerID, String shareID, String shareType, int shareCount, String targetMarket);
+  ShareMarket.Result addShare (String shareID, String shareType, int capacity);
+  ShareMarket.Result removeShare (String shareID, String shareType);
+  ShareMarket.MarketAvailability[] listShareAvailability (String shareType);
+
+  // and time-slot order; timeSlot is M, A or E, or empty for all slots
+  ShareMarket.MarketAvailability findSharesByDate (String shareType, String fromDate, String toDate, String timeSlot);
+  ShareMarket.Result purchaseRemoteShare (String buyerID, String shareID, String shareType, int shareCount, String targetMarket);
+  ShareMarket.Result sellRemoteShare (String buyerID, String shareID, String shareType, int shareCount, String targetMarket);
 
   // Buyer Operations
-  String purchaseShare (String buyerID, String shareID, String shareType, int shareCount);
-  String getShares (String buyerID);
-  String sellShare (String buyerID, String shareID, int shareCount);
-  String swapShares (String buyerID, String oldShareID, String oldShareType, String newShareID, String newShareType);
+  ShareMarket.Result purchaseShare (String buyerID, String shareID, String shareType, int shareCount);
+  ShareMarket.MarketHoldings[] getShares (String buyerID);
+
+  // Server-to-server part of getShares: the buyer's holdings in this market only
+  ShareMarket.MarketHoldings getLocalHoldings (String buyerID);
+  ShareMarket.Result sellShare (String buyerID, String shareID, int shareCount);
+  ShareMarket.Result swapShares (String buyerID, String oldShareID, String oldShareType, String newShareID, String newShareType);
+
+  // Cross-market purchase and sell; a resent requestID gets the first result back
+  ShareMarket.Result purchaseShareOnce (String requestID, String buyerID, String shareID, String shareType, int shareCount);
+  ShareMarket.Result sellShareOnce (String requestID, String buyerID, String shareID, int shareCount);
+
+  // Batches; one result per order, in order
+  ShareMarket.Result[] purchaseShares (String buyerID, ShareMarket.Order[] orders);
+  ShareMarket.Result[] sellShares (String buyerID, ShareMarket.Order[] orders);
+
+  // Cross-market legs of a batch; a resent requestID gets the first results back
+  ShareMarket.Result[] purchaseSharesOnce (String requestID, String buyerID, ShareMarket.Order[] orders);
+  ShareMarket.Result[] sellSharesOnce (String requestID, String buyerID, ShareMarket.Order[] orders);
 } // interface ServerOperations
@@ -7,32 +7,175 @@ import org.omg.CosNaming.NamingContextPackage.*;
 import org.omg.PortableServer.*;
 //import org.omg.PortableServer.POA;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.InetAddress;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Journal gates and lock handles are held by try-with-resources and never read
+@SuppressWarnings("try")
 public class ShareMarketServerImpl extends ShareMarket.ServerPOA {
 
     private final String city;
     private final int udpPort;
     private static final int DEFAULT_PORT = 5000;
-    private final Map<String, Map<String, Share>> shareDatabase = new HashMap<>();
-    private final Map<String, Integer> remoteServers = new HashMap<>();
-    private final Map<String, Map<String, Integer>> buyerHoldings = new HashMap<>();
+    private final Map<String, ConcurrentNavigableMap<String, Share>> shareDatabase = new ConcurrentHashMap<>();
+    private final Map<String, Integer> remoteServers = new ConcurrentHashMap<>();
+    // Canonical (shareType, shareID) keys shared by holdings and locks
+    private final ShareKeyRegistry shareKeys = new ShareKeyRegistry();
+    private final BuyerHoldings buyerHoldings = new BuyerHoldings(shareKeys);
+
+    // Local shares by trading date and time slot
+    private final ShareDateIndex dateIndex = new ShareDateIndex();
+
+    // How long a swap reservation waits for the requesting market's commit or abort
+    private static final long SWAP_HOLD_TTL_MS = Long.getLong("dsms.swap.holdTtlMs", 5000);
+
+    // Open holds of two-phase swaps, both for local and remote legs
+    private final SwapReservations reservations = new SwapReservations(SWAP_HOLD_TTL_MS, this::expireHold);
+
+    // Dense buyer numbers for the per-share holder bitmaps
+    private final BuyerRegistry buyerOrdinals = new BuyerRegistry();
+
+    // Striped locks keyed on (shareType, shareID) and buyerID instead of one servant-wide monitor
+    private final StripedLock locks = new StripedLock();
+
+    // Overall deadline for a listShareAvailability fan-out across all remote markets
+    private static final long LIST_AVAILABILITY_DEADLINE_MS = Long.getLong("dsms.list.deadlineMs", 3000);
+    // Most rows taken from one remote market's listing; the rest is reported as partial
+    private static final int LIST_AVAILABILITY_MAX_ROWS = Integer.getInteger("dsms.list.maxRows", 10000);
+    // Overall deadline for the remote holdings of a getShares call
+    private static final long GET_SHARES_DEADLINE_MS = 3000;
+
+    // Deadline for one swap request including retries; below the target's hold TTL
+    private static final long SWAP_CALL_DEADLINE_MS = Long.getLong("dsms.udp.deadlineMs", 4000);
+    // Pause between attempts to learn the outcome of a swap commit that got no reply
+    private static final long SWAP_RESOLVE_RETRY_MS = 2000;
+    // How long such a swap is resolved for before it is escalated; well inside the
+    // target's dedup TTL (dsms.udp.dedupTtlMs), so resent commits are still recognised
+    private static final long SWAP_RESOLVE_WINDOW_MS = Long.getLong("dsms.swap.resolveWindowMs", 60000);
+
+    // Worker threads for concurrent requests to remote markets
+    private final ExecutorService remoteExecutor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "remote-market-call");
+        t.setDaemon(true);
+        return t;
+    });
 
     // CORBA ORB reference
     public static ORB orb;
 
+    // Naming service lookups of the other markets, cached per market name
+    private final RemoteServerCache remoteServerRefs = new RemoteServerCache(() -> orb);
+
+    // Results of cross-market purchases and sells by request ID, replayed for resent calls
+    private final IdempotencyCache<String, Result> remoteResults = new IdempotencyCache<>(
+            Integer.getInteger("dsms.corba.dedupEntries", 100_000), Long.getLong("dsms.corba.dedupTtlMs", 120_000));
+    private final IdempotencyCache<String, Result[]> remoteBatchResults = new IdempotencyCache<>(
+            Integer.getInteger("dsms.corba.dedupEntries", 100_000), Long.getLong("dsms.corba.dedupTtlMs", 120_000));
+    // Request IDs for calls this market makes: city, a random prefix per run and a counter
+    private final String requestIdPrefix = Long.toHexString(ThreadLocalRandom.current().nextLong()) + ":";
+    private final AtomicLong nextRequestId = new AtomicLong();
+
+    // Shared, request-ID correlated client for all outgoing inter-market UDP requests
+    private final UDPClient udpClient;
+
+    // Owning market and UDP port per share ID prefix
+    private final MarketDirectory directory = new MarketDirectory();
+
+    // Heartbeat failure detector and circuit breaker per remote market
+    private final PeerMonitor peerMonitor;
+
+    // Write-ahead log of inventory mutations, null when persistence is switched off
+    private final InventoryJournal journal;
+
+    // Batched audit log writer, null when dsms.audit=off
+    private final AuditLog auditLog;
+    private static final boolean DURABLE_AUDIT = Boolean.getBoolean("dsms.audit.durable");
+
+    // How often the component statistics are written to the audit log; 0 switches the dump off
+    private static final long STATS_INTERVAL_MS = Long.getLong("dsms.stats.intervalMs", 60000);
+    // Components whose getStats() the dump includes; the UDP server thread registers itself
+    private final List<Supplier<String>> statsSources = new CopyOnWriteArrayList<>();
+
     public ShareMarketServerImpl(String city, int udpPort) {
         this.city = city;
         this.udpPort = udpPort;
+        try {
+            this.udpClient = new UDPClient();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open UDP client for " + city, e);
+        }
+        this.peerMonitor = new PeerMonitor(city, udpClient, remoteExecutor);
+        this.auditLog = "off".equalsIgnoreCase(System.getProperty("dsms.audit", "on")) ? null : new AuditLog(city);
         initializeShareTypes();
+
+        this.journal = InventoryJournal.fromSystemProperties(city, new JournalTarget());
+
+        // Recover shares and holdings from the last run
+        if (journal != null) {
+            try {
+                journal.open();
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not recover journal for " + city, e);
+            }
+        }
+
+        addStatsSource(directory::getStats);
+        addStatsSource(remoteServerRefs::getStats);
+        addStatsSource(() -> "Once results: " + remoteResults.getStats());
+        addStatsSource(udpClient::getStats);
+        addStatsSource(peerMonitor::getStats);
+        addStatsSource(reservations::getStats);
+        if (journal != null) {
+            addStatsSource(() -> "Journal: committedRecords=" + journal.getCommittedRecords());
+        }
+        if (auditLog != null) {
+            addStatsSource(auditLog::getStats);
+            if (STATS_INTERVAL_MS > 0) {
+                Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "stats-dump");
+                    t.setDaemon(true);
+                    return t;
+                }).scheduleWithFixedDelay(this::dumpStats, STATS_INTERVAL_MS, STATS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    // Adds a component to the periodic statistics dump
+    public void addStatsSource(Supplier<String> source) {
+        statsSources.add(source);
+    }
+
+    // One audit record per line of statistics, so multi-line blocks stay readable
+    private void dumpStats() {
+        for (Supplier<String> source : statsSources) {
+            try {
+                for (String line : source.get().split("\n")) {
+                    logAction("Stats", line.trim(), true);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Could not collect statistics: " + e);
+            }
+        }
     }
 
     public static void setORB(ORB orb_val) {
@@ -40,491 +183,1297 @@ public class ShareMarketServerImpl extends ShareMarket.ServerPOA {
     }
 
     private void initializeShareTypes() {
-        shareDatabase.put("Equity", new HashMap<>());
-        shareDatabase.put("Bonus", new HashMap<>());
-        shareDatabase.put("Dividend", new HashMap<>());
+        // Shares are kept sorted by ID so listings can be paged with a continuation token
+        shareDatabase.put("Equity", new ConcurrentSkipListMap<>());
+        shareDatabase.put("Bonus", new ConcurrentSkipListMap<>());
+        shareDatabase.put("Dividend", new ConcurrentSkipListMap<>());
     }
 
     public void addRemoteServer(String city, int port) {
         remoteServers.put(city, port);
+        directory.setUdpPort(city, port);
+        peerMonitor.addPeer(city, port);
     }
 
-    public Map<String, Map<String, Share>> getShareDatabase() {
+    public String getCity() {
+        return city;
+    }
+
+    public Map<String, ConcurrentNavigableMap<String, Share>> getShareDatabase() {
         return this.shareDatabase;
     }
 
-    public Map<String, Map<String, Integer>> getBuyerHoldings() {
+    public BuyerHoldings getBuyerHoldings() {
         return this.buyerHoldings;
     }
 
+    private Share getLocalShare(String shareType, String shareID) {
+        Map<String, Share> shares = shareDatabase.get(shareType);
+        return shares == null ? null : shares.get(shareID);
+    }
+
+    // Keeps the share's holder bitmap in line with whether the buyer still holds it
+    private void updateHolder(Share share, String buyerID, boolean holds) {
+        if (share == null) {
+            return;
+        }
+        if (holds) {
+            share.addBuyer(buyerOrdinals.intern(buyerID));
+        } else {
+            int ordinal = buyerOrdinals.find(buyerID);
+            if (ordinal >= 0) {
+                share.removeBuyer(ordinal);
+            }
+        }
+    }
+
+    private InventoryJournal.Gate enterJournal() {
+        return journal == null ? InventoryJournal.NO_GATE : journal.enter();
+    }
+
+    // Appends a mutation record; call inside enterJournal()
+    private CompletableFuture<Void> journal(InventoryJournal.Type type, String buyerID, String shareType,
+                                            String shareID, int count) {
+        return journal(type, buyerID, shareType, shareID, count, 0);
+    }
+
+    private CompletableFuture<Void> journal(InventoryJournal.Type type, String buyerID, String shareType,
+                                            String shareID, int count, long reference) {
+        return journal == null ? null
+                : journal.append(new InventoryJournal.Entry(type, buyerID, shareType, shareID, count, reference));
+    }
+
+    // Waits until a mutation is durable; call after releasing locks. False if the journal write failed
+    private boolean awaitJournal(CompletableFuture<Void> ticket) {
+        return ticket == null || journal.await(ticket);
+    }
+
+    // Awaits the ticket now, or leaves it in deferred for a batch to await all at once
+    private boolean settleJournal(CompletableFuture<Void> ticket, List<CompletableFuture<Void>> deferred) {
+        if (deferred == null) {
+            return awaitJournal(ticket);
+        }
+        if (ticket != null) {
+            deferred.add(ticket);
+        }
+        return true;
+    }
+
+    // The change is applied in memory but its journal record was not written
+    private Result journalFailed(String requestType, String requestParams) {
+        logAction(requestType, requestParams + ", Journal write failed", false, true);
+        return Results.failed(city, "Journal write failed; the change may be lost on restart");
+    }
+
     private void logAction(String requestType, String requestParams, boolean success) {
-        try {
-            FileWriter writer = new FileWriter("logs/" + city + "_Server.log", true);
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-            writer.write("[" + timestamp + "] " + requestType + " | Params: " + requestParams + " | Status: " + (success ? "Successfully Completed" : "Failed") + "\n");
-            writer.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+        logAction(requestType, requestParams, success, false);
+    }
+
+    // Audit-critical entries wait for the disk when dsms.audit.durable=true
+    private void logAction(String requestType, String requestParams, boolean success, boolean critical) {
+        if (auditLog == null) {
+            return;
+        }
+        if (critical && DURABLE_AUDIT) {
+            auditLog.logDurable(requestType, requestParams, success);
+        } else {
+            auditLog.log(requestType, requestParams, success);
         }
     }
 
     @Override
-    public synchronized String addShare(String shareID, String shareType, int availableCapacity) {
-        shareDatabase.putIfAbsent(shareType, new HashMap<>());
+    public Result addShare(String shareID, String shareType, int availableCapacity) {
+        shareDatabase.putIfAbsent(shareType, new ConcurrentSkipListMap<>());
 
-        if (shareDatabase.get(shareType).containsKey(shareID)) {
-            logAction("Add Share", "ShareID: " + shareID + ", ShareType: " + shareType, false);
-            return "Share already exists with ID " + shareID + " and Type " + shareType;
+        if(shareType.equalsIgnoreCase("equity") || shareType.equalsIgnoreCase("bonus") || shareType.equalsIgnoreCase("dividend")){
+            CompletableFuture<Void> durable;
+            ShareKey key = shareKeys.intern(shareType, shareID);
+            try (InventoryJournal.Gate gate = enterJournal();
+                 StripedLock.Held ignored = locks.lockAll(key)) {
+                Share created = new Share(shareID, shareType, availableCapacity);
+                Share existing = shareDatabase.get(shareType).putIfAbsent(shareID, created);
+                if (existing != null) {
+                    logAction("Add Share", "ShareID: " + shareID + ", ShareType: " + shareType, false);
+                    return Results.of(ResultCode.ALREADY_EXISTS, city);
+                }
+                dateIndex.add(created);
+                durable = journal(InventoryJournal.Type.ADD_SHARE, null, shareType, shareID, availableCapacity);
+            }
+            if (!awaitJournal(durable)) {
+                return journalFailed("Add Share", "ShareID: " + shareID + ", ShareType: " + shareType);
+            }
+            logAction("Add Share", "ShareID: " + shareID + ", ShareType: " + shareType + ", Capacity: " + availableCapacity, true, true);
+            return Results.success(city, shareType, availableCapacity);
         }
 
-        if(shareType.equalsIgnoreCase("equity") || shareType.equalsIgnoreCase("bonus") || shareType.equalsIgnoreCase("dividend")){
-            shareDatabase.get(shareType).put(shareID, new Share(shareID, shareType, availableCapacity));
-            logAction("Add Share", "ShareID: " + shareID + ", ShareType: " + shareType + ", Capacity: " + availableCapacity, true);
-            return "Share added successfully: " + shareType + "-" + shareID;
+        if (shareDatabase.get(shareType).containsKey(shareID)) {
+            logAction("Add Share", "ShareID: " + shareID + ", ShareType: " + shareType, false);
+            return Results.of(ResultCode.ALREADY_EXISTS, city);
         }
         logAction("Add Share", "ShareID: " + shareID + " , ShareType: "+ shareType, false);
-        return "Share not added: "+shareType + "-" +shareID;
+        return Results.of(ResultCode.INVALID_SHARE_TYPE, city);
     }
 
     @Override
-    public synchronized String getShares(String buyerID) {
-        // Strip depth marker if present for cleaner processing
-        String cleanBuyerID = buyerID.contains("::DEPTH::") ?
-                buyerID.split("::DEPTH::")[0] : buyerID;
-
-        StringBuilder result = new StringBuilder("Your Shares:\n");
-        boolean hasShares = false;
-
-        // Check for local shares
-        if (buyerHoldings.containsKey(cleanBuyerID) && !buyerHoldings.get(cleanBuyerID).isEmpty()) {
-            result.append(this.city).append(" Market Shares:\n");
-            for (Map.Entry<String, Integer> entry : buyerHoldings.get(cleanBuyerID).entrySet()) {
-                result.append("[Share: ").append(entry.getKey())
-                        .append(", Owned: ").append(entry.getValue()).append("]\n");
-            }
-            hasShares = true;
-        }
-
-        // Only check remote markets if this isn't already a recursive call
-        if (!buyerID.contains("::DEPTH::")) {
-            // Add depth marker to prevent infinite recursion
-            String depthMarkedID = cleanBuyerID + "::DEPTH::1";
-
-            // Try to get shares from each remote market
-            for (String remoteName : remoteServers.keySet()) {
-                if (!remoteName.equalsIgnoreCase(this.city)) {
-                    try {
-                        // Get CORBA reference for remote server
-                        ShareMarket.Server remoteServer = getRemoteServerRef(remoteName+"ShareMarketServer");
-                        if (remoteServer == null) {
-                            System.out.println("Failed to get reference for market: " + remoteName);
-                            continue;
-                        }
-
-                        // Get shares from remote server
-                        String remoteSharesResponse = remoteServer.getShares(depthMarkedID);
-                        System.out.println("DEBUG - Remote response from " + remoteName + ": " + remoteSharesResponse);
-
-                        // Only process if the buyer has shares in this remote market
-                        if (!remoteSharesResponse.equals("You do not own any shares in any market.")) {
-                            // Extract just the shares part, removing the header
-                            String[] lines = remoteSharesResponse.split("\n");
-                            StringBuilder remoteShares = new StringBuilder();
-
-                            boolean foundShareLines = false;
-                            for (int i = 1; i < lines.length; i++) { // Skip the header line
-                                if (lines[i].trim().startsWith("[Share:")) {
-                                    remoteShares.append(lines[i]).append("\n");
-                                    foundShareLines = true;
-                                }
-                            }
-
-                            if (foundShareLines) {
-                                if (hasShares) {
-                                    result.append("\n"); // Add spacing between markets
-                                }
-                                result.append(remoteName).append(" Market Shares:\n");
-                                result.append(remoteShares);
-                                hasShares = true;
-                            }
-                        }
-                    } catch (Exception e) {
-                        System.out.println("Error fetching shares from " + remoteName + ": " + e.getMessage());
-                        e.printStackTrace(); // More detailed error info will be shown in the server not in the client side
-                    }
-                }
+    public MarketHoldings[] getShares(String buyerID) {
+        // Ask every remote market at once, so the lookup takes one round trip
+        // to the slowest market; markets known to be down are skipped
+        Map<String, Future<MarketHoldings>> pending = new LinkedHashMap<>();
+        for (String remoteName : remoteServers.keySet()) {
+            if (remoteName.equalsIgnoreCase(this.city)) {
+                continue;
             }
+            if (!peerMonitor.isAvailable(remoteName)) {
+                logAction("Get Shares", "BuyerID: " + buyerID + ", Skipped unavailable market: " + remoteName, false);
+                continue;
+            }
+            pending.put(remoteName, remoteExecutor.submit(() -> getRemoteHoldings(remoteName, buyerID)));
         }
 
-        logAction("Get Shares", "BuyerID: " + cleanBuyerID, true);
+        List<MarketHoldings> portfolio = new ArrayList<>();
+        MarketHoldings local = getLocalHoldings(buyerID);
+        if (local.holdings.length > 0) {
+            portfolio.add(local);
+        }
 
-        if (!hasShares) {
-            return "You do not own any shares in any market.";
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(GET_SHARES_DEADLINE_MS);
+        for (Map.Entry<String, Future<MarketHoldings>> entry : pending.entrySet()) {
+            String remoteName = entry.getKey();
+            try {
+                MarketHoldings remote = entry.getValue().get(Math.max(0, deadline - System.nanoTime()),
+                        TimeUnit.NANOSECONDS);
+                peerMonitor.recordSuccess(remoteName);
+                if (remote.holdings.length > 0) {
+                    portfolio.add(remote);
+                }
+            } catch (Exception e) {
+                entry.getValue().cancel(true);
+                peerMonitor.recordFailure(remoteName);
+                System.out.println("Error fetching shares from " + remoteName + ": " + e);
+            }
         }
 
-        return result.toString();
+        logAction("Get Shares", "BuyerID: " + buyerID, true);
+        return portfolio.toArray(new MarketHoldings[0]);
     }
 
+    // Holdings are copied under the buyer lock; no remote market is contacted
     @Override
-    public synchronized String removeShare(String shareID, String shareType) {
-        if (!shareDatabase.containsKey(shareType) || !shareDatabase.get(shareType).containsKey(shareID)) {
-            logAction("Remove Share", "ShareID: " + shareID + ", ShareType: " + shareType, false);
-            return "Share not found.";
+    public MarketHoldings getLocalHoldings(String buyerID) {
+        try (StripedLock.Held ignored = locks.lockAll(StripedLock.buyerKey(buyerID))) {
+            Map<ShareKey, Integer> holdings = buyerHoldings.copyOf(buyerID);
+            Holding[] rows = new Holding[holdings.size()];
+            int i = 0;
+            for (Map.Entry<ShareKey, Integer> entry : holdings.entrySet()) {
+                rows[i++] = new Holding(entry.getKey().getShareID(), entry.getKey().getShareType(), entry.getValue());
+            }
+            return new MarketHoldings(this.city, rows);
         }
+    }
 
-        shareDatabase.get(shareType).remove(shareID);
-        logAction("Remove Share", "ShareID: " + shareID + ", ShareType: " + shareType, true);
-        return "Share removed successfully.";
+    private MarketHoldings getRemoteHoldings(String market, String buyerID) {
+        String serverName = market + "ShareMarketServer";
+        ShareMarket.Server remoteServer = getRemoteServerRef(serverName);
+        if (remoteServer == null) {
+            throw new IllegalStateException("No reference for market " + market);
+        }
+        try {
+            return remoteServer.getLocalHoldings(buyerID);
+        } catch (RuntimeException e) {
+            remoteServerRefs.onFailure(serverName, e);
+            throw e;
+        }
     }
 
     @Override
-    public synchronized String purchaseShare(String buyerID, String shareID, String shareType, int shareCount) {
-        String uniqueKey = shareType + "-" + shareID;
-
-        if (shareDatabase.containsKey(shareType) && shareDatabase.get(shareType).containsKey(shareID)) {
-            Share share = shareDatabase.get(shareType).get(shareID);
-            if (share.getAvailableCapacity() < shareCount) {
-                logAction("Purchase Share", "BuyerID: " + buyerID + ", ShareID: " + shareID + ", ShareType: " + shareType + ", Quantity: " + shareCount, false);
-                return "Purchase failed. Not enough shares available.";
+    public Result removeShare(String shareID, String shareType) {
+        CompletableFuture<Void> durable;
+        try (InventoryJournal.Gate gate = enterJournal();
+             StripedLock.Held ignored = locks.lockAll(shareKeys.find(shareType, shareID))) {
+            if (getLocalShare(shareType, shareID) == null) {
+                logAction("Remove Share", "ShareID: " + shareID + ", ShareType: " + shareType, false);
+                return Results.of(ResultCode.NOT_FOUND, city);
             }
+            Share removed = shareDatabase.get(shareType).remove(shareID);
+            dateIndex.remove(removed);
+            durable = journal(InventoryJournal.Type.REMOVE_SHARE, null, shareType, shareID, 0);
+        }
+        if (!awaitJournal(durable)) {
+            return journalFailed("Remove Share", "ShareID: " + shareID + ", ShareType: " + shareType);
+        }
+        logAction("Remove Share", "ShareID: " + shareID + ", ShareType: " + shareType, true, true);
+        return Results.success(city, shareType, 0);
+    }
 
-            // Update the share's available capacity
-            share.reduceCapacity(shareCount);
+    @Override
+    public Result purchaseShare(String buyerID, String shareID, String shareType, int shareCount) {
+        return purchaseShare(buyerID, shareID, shareType, shareCount, true);
+    }
 
-            // Update buyer's holdings
-            buyerHoldings.putIfAbsent(buyerID, new HashMap<>());
-            Map<String, Integer> holdings = buyerHoldings.get(buyerID);
-            holdings.put(uniqueKey, holdings.getOrDefault(uniqueKey, 0) + shareCount);
+    // forward is false for requests another market already routed here, they take one hop only
+    private Result purchaseShare(String buyerID, String shareID, String shareType, int shareCount, boolean forward) {
+        Share share = getLocalShare(shareType, shareID);
+        if (share != null) {
+            return purchaseLocalShare(share, buyerID, shareID, shareType, shareCount, null);
+        }
 
-            logAction("Purchase Share", "BuyerID: " + buyerID + ", ShareID: " + shareID + ", ShareType: " + shareType + ", Quantity: " + shareCount, true);
-            return "Purchase successful. You bought " + shareCount + " of " + uniqueKey;
+        // Not ours: send it straight to the market named by the share ID prefix
+        String owner = directory.marketOf(shareID);
+        if (owner == null) {
+            directory.recordUnroutable();
+            logAction("Purchase Share", "BuyerID: " + buyerID + ", ShareID: " + shareID, false);
+            return Results.of(ResultCode.UNKNOWN_MARKET, city);
         }
-        else {
-            for (Map.Entry<String, Integer> entry : remoteServers.entrySet()) {
-                String remoteName = entry.getKey();
-                try {
-                    return purchaseRemoteShare(buyerID, shareID, shareType, shareCount, remoteName);
-                } catch (Exception e) {
-                    // If this remote server doesn't have it, continue to the next one
-                    continue;
-                }
+        if (owner.equalsIgnoreCase(city) || !forward) {
+            if (!owner.equalsIgnoreCase(city)) {
+                directory.recordMisrouted();
             }
             logAction("Purchase Share", "BuyerID: " + buyerID + ", ShareID: " + shareID, false);
-            return "Purchase failed. Share not found in any market.";
+            return Results.of(ResultCode.NOT_FOUND, city);
+        }
+        directory.recordRouted();
+        return purchaseRemoteShare(buyerID, shareID, shareType, shareCount, owner);
+    }
+
+    // With deferred set, the journal entry is collected there for the caller to await instead of awaited here
+    private Result purchaseLocalShare(Share share, String buyerID, String shareID, String shareType, int shareCount,
+                                      List<CompletableFuture<Void>> deferred) {
+        ShareKey uniqueKey = shareKeys.intern(shareType, shareID);
+        CompletableFuture<Void> durable;
+        // Journaled under the share and buyer locks, so a racing removal of the share or
+        // sell of the holding is always recorded after this purchase
+        try (InventoryJournal.Gate gate = enterJournal();
+             StripedLock.Held ignored = locks.lockAll(uniqueKey, StripedLock.buyerKey(buyerID))) {
+            // The share may have been removed before the locks were taken
+            if (getLocalShare(shareType, shareID) != share) {
+                logAction("Purchase Share", "BuyerID: " + buyerID + ", ShareID: " + shareID + ", ShareType: " + shareType, false);
+                return Results.of(ResultCode.NOT_FOUND, city);
+            }
+            // Claim the capacity first; the CAS fails instead of overselling
+            if (!share.tryReserve(shareCount)) {
+                logAction("Purchase Share", "BuyerID: " + buyerID + ", ShareID: " + shareID + ", ShareType: " + shareType + ", Quantity: " + shareCount, false);
+                return Results.of(ResultCode.NOT_ENOUGH_AVAILABLE, city);
+            }
+
+            buyerHoldings.add(buyerID, uniqueKey, shareCount);
+            updateHolder(share, buyerID, true);
+            durable = journal(InventoryJournal.Type.PURCHASE, buyerID, shareType, shareID, shareCount);
         }
+        if (!settleJournal(durable, deferred)) {
+            return journalFailed("Purchase Share", "BuyerID: " + buyerID + ", ShareID: " + shareID);
+        }
+
+        logAction("Purchase Share", "BuyerID: " + buyerID + ", ShareID: " + shareID + ", ShareType: " + shareType + ", Quantity: " + shareCount, true, true);
+        return Results.success(city, shareType, shareCount);
     }
 
     @Override
-    public synchronized String purchaseRemoteShare(String buyerID, String shareID, String shareType,
+    public Result purchaseRemoteShare(String buyerID, String shareID, String shareType,
                                                    int shareCount, String targetMarket) {
+        if (!peerMonitor.isAvailable(targetMarket)) {
+            logAction("Purchase Remote Share", "BuyerID: " + buyerID + ", Target: " + targetMarket + " unavailable", false);
+            return Results.of(ResultCode.MARKET_UNAVAILABLE, targetMarket);
+        }
+        return purchaseOnRemote(buyerID, shareID, shareType, shareCount, targetMarket);
+    }
+
+    // Remote purchase once the market's circuit breaker let the call through
+    private Result purchaseOnRemote(String buyerID, String shareID, String shareType,
+                                    int shareCount, String targetMarket) {
+        String market = targetMarket;
         try {
             // Get CORBA reference for remote server
             targetMarket+="ShareMarketServer";
 //            System.out.println("The targetMarket in purchaseRemoteShare: "+targetMarket);
             ShareMarket.Server remoteServer = getRemoteServerRef(targetMarket);
             if (remoteServer == null) {
+                peerMonitor.recordFailure(market);
                 logAction("Purchase Remote Share", "BuyerID: " + buyerID + ", ShareID: " + shareID +
                         ", Target: " + targetMarket, false);
-                return "Purchase failed. Invalid target market.";
+                return Results.of(ResultCode.MARKET_UNAVAILABLE, market);
+            }
+
+            // Execute the purchase on the remote server; resent once with the same ID if the call was lost
+            String requestID = newRequestId();
+            Result result;
+            try {
+                result = remoteServer.purchaseShareOnce(requestID, buyerID, shareID, shareType, shareCount);
+            } catch (COMM_FAILURE | TRANSIENT e) {
+                remoteServerRefs.onFailure(targetMarket, e);
+                remoteServer = getRemoteServerRef(targetMarket);
+                if (remoteServer == null) {
+                    throw e;
+                }
+                result = remoteServer.purchaseShareOnce(requestID, buyerID, shareID, shareType, shareCount);
             }
 
-            // Execute the purchase on the remote server
-            String result = remoteServer.purchaseShare(buyerID, shareID, shareType, shareCount);
+            peerMonitor.recordSuccess(market);
 
             // Log the cross-server transaction
             logAction("Purchase Remote Share", "BuyerID: " + buyerID + ", ShareID: " + shareID +
                     ", Target: " + targetMarket + ", Quantity: " + shareCount, true);
 
-            return "Cross-server purchase: " + result;
+            return result;
         } catch (Exception e) {
+            remoteServerRefs.onFailure(targetMarket, e);
+            peerMonitor.recordFailure(market);
             logAction("Purchase Remote Share", "BuyerID: " + buyerID + ", ShareID: " + shareID +
                     ", Target: " + targetMarket, false);
-            return "Cross-server purchase failed: " + e.getMessage();
+            return Results.failed(market, e.getMessage());
         }
     }
 
     @Override
-    public synchronized String sellShare(String buyerID, String shareID, int quantity) {
-        String uniqueKey = null;
-        String shareType = null;
-
-        if (buyerHoldings.containsKey(buyerID)) {
-            for (String key : buyerHoldings.get(buyerID).keySet()) {
-                if (key.endsWith("-" + shareID)) {
-                    uniqueKey = key;
-                    shareType = key.split("-")[0];
-                    break;
+    public Result sellShare(String buyerID, String shareID, int quantity) {
+        return sellShare(buyerID, shareID, quantity, true);
+    }
+
+    // forward is false for requests another market already routed here, they take one hop only
+    private Result sellShare(String buyerID, String shareID, int quantity, boolean forward) {
+        // Holding key via the buyer's shareID index
+        ShareKey uniqueKey = buyerHoldings.findKey(buyerID, shareID);
+
+        if (uniqueKey != null) {
+            return sellLocalShare(buyerID, shareID, quantity, uniqueKey, null);
+        }
+        else {
+            // If not held here, the holding can only be in the market that owns the share
+            String owner = directory.marketOf(shareID);
+            if (owner == null) {
+                directory.recordUnroutable();
+                logAction("Sell Share", "BuyerID: " + buyerID + ", ShareID: " + shareID, false);
+                return Results.of(ResultCode.UNKNOWN_MARKET, city);
+            }
+            if (owner.equalsIgnoreCase(city) || !forward) {
+                if (!owner.equalsIgnoreCase(city)) {
+                    directory.recordMisrouted();
                 }
+                logAction("Sell Share", "BuyerID: " + buyerID + ", ShareID: " + shareID, false);
+                return Results.of(ResultCode.NOT_OWNED, city);
             }
+            directory.recordRouted();
+            return sellRemoteShare(buyerID, shareID, null, quantity, owner);
         }
+    }
 
-        if (uniqueKey != null) {
-            int ownedShares = buyerHoldings.get(buyerID).get(uniqueKey);
-
-            if (quantity > ownedShares) {
+    // With deferred set, the journal entry is collected there for the caller to await instead of awaited here
+    private Result sellLocalShare(String buyerID, String shareID, int quantity, ShareKey uniqueKey,
+                                  List<CompletableFuture<Void>> deferred) {
+        String shareType = uniqueKey.getShareType();
+        CompletableFuture<Void> durable;
+        try (InventoryJournal.Gate gate = enterJournal();
+             StripedLock.Held ignored = locks.lockAll(uniqueKey, StripedLock.buyerKey(buyerID))) {
+            // The holding may have been sold or swapped away before the locks were taken
+            Integer ownedShares = buyerHoldings.get(buyerID, uniqueKey);
+
+            if (ownedShares == null || quantity > ownedShares) {
                 logAction("Sell Share", "BuyerID: " + buyerID + ", ShareID: " + shareID + ", Quantity: " + quantity, false);
-                return "Sell failed. You cannot sell more than you own.";
-            }
-
-            if (quantity == ownedShares) {
-                buyerHoldings.get(buyerID).remove(uniqueKey);
-            } else {
-                buyerHoldings.get(buyerID).put(uniqueKey, ownedShares - quantity);
+                return Results.of(ResultCode.INSUFFICIENT_HOLDING, city);
             }
 
-            shareType = uniqueKey.split("-")[0];
-            Share share = shareDatabase.get(shareType).get(shareID);
-            share.increaseCapacity(quantity);
+            buyerHoldings.set(buyerID, uniqueKey, ownedShares - quantity);
 
-            logAction("Sell Share", "BuyerID: " + buyerID + ", ShareID: " + shareID + ", Quantity: " + quantity, true);
-            return "Sell operation successful. Sold " + quantity + " of " + uniqueKey;
-        }
-        else {
-            // If not found locally, find in other market
-            for (Map.Entry<String, Integer> entry : remoteServers.entrySet()) {
-                String remoteName = entry.getKey();
-                try {
-                    return sellRemoteShare(buyerID, shareID, null, quantity, remoteName);
-                } catch (Exception e) {
-                    continue;
-                }
+            Share share = getLocalShare(shareType, shareID);
+            if (share != null) {
+                share.release(quantity);
             }
-            logAction("Sell Share", "BuyerID: " + buyerID + ", ShareID: " + shareID, false);
-            return "Sell failed. Share not found in any market.";
+            updateHolder(share, buyerID, quantity < ownedShares);
+            durable = journal(InventoryJournal.Type.SELL, buyerID, shareType, shareID, quantity);
         }
+        if (!settleJournal(durable, deferred)) {
+            return journalFailed("Sell Share", "BuyerID: " + buyerID + ", ShareID: " + shareID);
+        }
+
+        logAction("Sell Share", "BuyerID: " + buyerID + ", ShareID: " + shareID + ", Quantity: " + quantity, true, true);
+        return Results.success(city, shareType, quantity);
     }
 
     @Override
-    public synchronized String sellRemoteShare(String buyerID, String shareID, String shareType, int shareCount, String targetMarket) {
+    public Result sellRemoteShare(String buyerID, String shareID, String shareType, int shareCount, String targetMarket) {
+        if (!peerMonitor.isAvailable(targetMarket)) {
+            logAction("Sell Remote Share", "BuyerID: " + buyerID + ", Target: " + targetMarket + " unavailable", false);
+            return Results.of(ResultCode.MARKET_UNAVAILABLE, targetMarket);
+        }
+        return sellOnRemote(buyerID, shareID, shareCount, targetMarket);
+    }
+
+    // Remote sell once the market's circuit breaker let the call through
+    private Result sellOnRemote(String buyerID, String shareID, int shareCount, String targetMarket) {
         try {
             // Get CORBA reference for remote server
             String fullMarketName = targetMarket+"ShareMarketServer";
             ShareMarket.Server remoteServer = getRemoteServerRef(fullMarketName);
             if (remoteServer == null) {
+                peerMonitor.recordFailure(targetMarket);
                 logAction("Sell Remote Share", "BuyerID: " + buyerID + ", ShareID: " + shareID +
                         ", Target: " + targetMarket, false);
-                return "Sell failed. Invalid target market.";
+                return Results.of(ResultCode.MARKET_UNAVAILABLE, targetMarket);
             }
 
-            // Execute the sell on the remote server
-            String result = remoteServer.sellShare(buyerID, shareID, shareCount);
+            // Execute the sell on the remote server; resent once with the same ID if the call was lost
+            String requestID = newRequestId();
+            Result result;
+            try {
+                result = remoteServer.sellShareOnce(requestID, buyerID, shareID, shareCount);
+            } catch (COMM_FAILURE | TRANSIENT e) {
+                remoteServerRefs.onFailure(fullMarketName, e);
+                remoteServer = getRemoteServerRef(fullMarketName);
+                if (remoteServer == null) {
+                    throw e;
+                }
+                result = remoteServer.sellShareOnce(requestID, buyerID, shareID, shareCount);
+            }
+
+            peerMonitor.recordSuccess(targetMarket);
 
             // Log the cross-server transaction
             logAction("Sell Remote Share", "BuyerID: " + buyerID + ", ShareID: " + shareID +
                     ", Target: " + targetMarket + ", Quantity: " + shareCount, true);
 
-            return "Cross-server sell: " + result;
+            return result;
         } catch (Exception e) {
+            remoteServerRefs.onFailure(targetMarket + "ShareMarketServer", e);
+            peerMonitor.recordFailure(targetMarket);
             logAction("Sell Remote Share", "BuyerID: " + buyerID + ", ShareID: " + shareID +
                     ", Target: " + targetMarket, false);
-            return "Cross-server sell failed: " + e.getMessage();
+            return Results.failed(targetMarket, e.getMessage());
         }
     }
 
     @Override
-    public synchronized String listShareAvailability(String shareType) {
-        StringBuilder availability = new StringBuilder();
-
-        synchronized (shareDatabase) {
-            if (shareDatabase.containsKey(shareType)) {
-                for (Share share : shareDatabase.get(shareType).values()) {
-                    availability.append("[Share ID: ").append(share.getShareID())
-                            .append(", Type: ").append(share.getShareType())
-                            .append(", Available: ").append(share.getAvailableCapacity()).append("]\n");
+    public Result purchaseShareOnce(String requestID, String buyerID, String shareID, String shareType, int shareCount) {
+        return remoteResults.execute(requestID, () -> purchaseShare(buyerID, shareID, shareType, shareCount, false));
+    }
+
+    @Override
+    public Result sellShareOnce(String requestID, String buyerID, String shareID, int shareCount) {
+        return remoteResults.execute(requestID, () -> sellShare(buyerID, shareID, shareCount, false));
+    }
+
+    @Override
+    public Result[] purchaseShares(String buyerID, Order[] orders) {
+        return executeBatch(buyerID, orders, true, true);
+    }
+
+    @Override
+    public Result[] sellShares(String buyerID, Order[] orders) {
+        return executeBatch(buyerID, orders, false, true);
+    }
+
+    @Override
+    public Result[] purchaseSharesOnce(String requestID, String buyerID, Order[] orders) {
+        return remoteBatchResults.execute(requestID, () -> executeBatch(buyerID, orders, true, false));
+    }
+
+    @Override
+    public Result[] sellSharesOnce(String requestID, String buyerID, Order[] orders) {
+        return remoteBatchResults.execute(requestID, () -> executeBatch(buyerID, orders, false, false));
+    }
+
+    /**
+     * Runs a batch of purchases or sells in one pass. Local orders are applied
+     * directly and their journal entries awaited together at the end; remote
+     * orders are grouped by owning market and sent as one call per market,
+     * all markets concurrently. Returns one result per order, in order.
+     * forward is false for a leg another market sent here.
+     */
+    private Result[] executeBatch(String buyerID, Order[] orders, boolean purchase, boolean forward) {
+        Result[] results = new Result[orders.length];
+        Map<String, List<Integer>> remoteLegs = new LinkedHashMap<>();
+        List<CompletableFuture<Void>> deferred = new ArrayList<>();
+        // Order index of each deferred journal entry
+        List<Integer> deferredOrders = new ArrayList<>();
+
+        for (int i = 0; i < orders.length; i++) {
+            Order order = orders[i];
+            int deferredBefore = deferred.size();
+            if (purchase) {
+                Share share = getLocalShare(order.shareType, order.shareID);
+                if (share != null) {
+                    results[i] = purchaseLocalShare(share, buyerID, order.shareID, order.shareType, order.shareCount, deferred);
+                    if (deferred.size() > deferredBefore) {
+                        deferredOrders.add(i);
+                    }
+                    continue;
+                }
+            } else {
+                ShareKey key = buyerHoldings.findKey(buyerID, order.shareID);
+                if (key != null) {
+                    results[i] = sellLocalShare(buyerID, order.shareID, order.shareCount, key, deferred);
+                    if (deferred.size() > deferredBefore) {
+                        deferredOrders.add(i);
+                    }
+                    continue;
+                }
+            }
+            String owner = directory.marketOf(order.shareID);
+            if (forward && owner != null && !owner.equalsIgnoreCase(city)) {
+                remoteLegs.computeIfAbsent(owner, k -> new ArrayList<>()).add(i);
+            } else {
+                // Not routable from here; the single-order path gives the failure and counts it
+                results[i] = purchase
+                        ? purchaseShare(buyerID, order.shareID, order.shareType, order.shareCount, false)
+                        : sellShare(buyerID, order.shareID, order.shareCount, false);
+            }
+        }
+
+        Map<String, Future<Result[]>> pending = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Integer>> leg : remoteLegs.entrySet()) {
+            Order[] legOrders = new Order[leg.getValue().size()];
+            for (int j = 0; j < legOrders.length; j++) {
+                legOrders[j] = orders[leg.getValue().get(j)];
+            }
+            pending.put(leg.getKey(), remoteExecutor.submit(() -> sendBatchLeg(leg.getKey(), buyerID, legOrders, purchase)));
+        }
+        // The legs run in parallel, so they share one per-call budget
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SWAP_CALL_DEADLINE_MS);
+
+        // The local entries become durable while the remote legs are in flight
+        for (int j = 0; j < deferred.size(); j++) {
+            if (!awaitJournal(deferred.get(j))) {
+                Order order = orders[deferredOrders.get(j)];
+                results[deferredOrders.get(j)] = journalFailed(purchase ? "Purchase Share" : "Sell Share",
+                        "BuyerID: " + buyerID + ", ShareID: " + order.shareID);
+            }
+        }
+
+        for (Map.Entry<String, Future<Result[]>> leg : pending.entrySet()) {
+            List<Integer> positions = remoteLegs.get(leg.getKey());
+            Result[] legResults;
+            try {
+                legResults = leg.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                leg.getValue().cancel(true);
+                peerMonitor.recordFailure(leg.getKey());
+                logAction(purchase ? "Batch Remote Purchase" : "Batch Remote Sell",
+                        "BuyerID: " + buyerID + ", Target: " + leg.getKey() + ", No reply in time", false);
+                legResults = new Result[positions.size()];
+                Arrays.fill(legResults, Results.of(ResultCode.MARKET_UNAVAILABLE, leg.getKey()));
+            } catch (Exception e) {
+                legResults = new Result[positions.size()];
+                Arrays.fill(legResults, Results.failed(leg.getKey(), e.getMessage()));
+            }
+            for (int j = 0; j < positions.size(); j++) {
+                results[positions.get(j)] = legResults[j];
+            }
+        }
+        return results;
+    }
+
+    // One call to the owning market for all of a batch's orders there
+    private Result[] sendBatchLeg(String market, String buyerID, Order[] orders, boolean purchase) {
+        if (!peerMonitor.isAvailable(market)) {
+            return Results.forOrders(orders, Results.of(ResultCode.MARKET_UNAVAILABLE, market));
+        }
+        for (int i = 0; i < orders.length; i++) {
+            directory.recordRouted();
+        }
+
+        String serverName = market + "ShareMarketServer";
+        String logType = purchase ? "Batch Remote Purchase" : "Batch Remote Sell";
+        try {
+            ShareMarket.Server remoteServer = getRemoteServerRef(serverName);
+            if (remoteServer == null) {
+                peerMonitor.recordFailure(market);
+                logAction(logType, "BuyerID: " + buyerID + ", Target: " + market, false);
+                return Results.forOrders(orders, Results.of(ResultCode.MARKET_UNAVAILABLE, market));
+            }
+
+            // Resent once with the same ID if the call was lost
+            String requestID = newRequestId();
+            Result[] remoteResults;
+            try {
+                remoteResults = purchase ? remoteServer.purchaseSharesOnce(requestID, buyerID, orders)
+                        : remoteServer.sellSharesOnce(requestID, buyerID, orders);
+            } catch (COMM_FAILURE | TRANSIENT e) {
+                remoteServerRefs.onFailure(serverName, e);
+                remoteServer = getRemoteServerRef(serverName);
+                if (remoteServer == null) {
+                    throw e;
                 }
+                remoteResults = purchase ? remoteServer.purchaseSharesOnce(requestID, buyerID, orders)
+                        : remoteServer.sellSharesOnce(requestID, buyerID, orders);
+            }
+            peerMonitor.recordSuccess(market);
+
+            logAction(logType, "BuyerID: " + buyerID + ", Target: " + market + ", Orders: " + orders.length, true);
+            return remoteResults;
+        } catch (Exception e) {
+            remoteServerRefs.onFailure(serverName, e);
+            peerMonitor.recordFailure(market);
+            logAction(logType, "BuyerID: " + buyerID + ", Target: " + market, false);
+            return Results.forOrders(orders, Results.failed(market, e.getMessage()));
+        }
+    }
+
+    private String newRequestId() {
+        return city + ":" + requestIdPrefix + nextRequestId.incrementAndGet();
+    }
+
+    /**
+     * Local shares of the type traded between two DDMMYY dates (inclusive),
+     * in date and time-slot order; an empty slot matches every slot. Served
+     * from the date index rather than a scan of the share database. Dates or
+     * slots that do not parse give an empty listing.
+     */
+    @Override
+    public MarketAvailability findSharesByDate(String shareType, String fromDate, String toDate, String timeSlot) {
+        LocalDate from = ShareId.parseDate(fromDate);
+        LocalDate to = ShareId.parseDate(toDate);
+        ShareId.TimeSlot slot = timeSlot.isEmpty() ? null : ShareId.TimeSlot.parse(timeSlot);
+        List<Availability> rows = new ArrayList<>();
+        if (from != null && to != null && (slot != null || timeSlot.isEmpty())) {
+            for (Share share : dateIndex.find(shareType, from, to, slot)) {
+                rows.add(new Availability(share.getShareID(), share.getAvailableCapacity()));
             }
         }
+        logAction("Find Shares By Date", "ShareType: " + shareType + ", From: " + fromDate + ", To: " + toDate +
+                ", Slot: " + timeSlot, true);
+        return new MarketAvailability(city, ListingStatus.COMPLETE, rows.toArray(new Availability[0]));
+    }
 
+    @Override
+    public MarketAvailability[] listShareAvailability(String shareType) {
+        List<MarketAvailability> report = new ArrayList<>();
+
+        List<Availability> localRows = new ArrayList<>();
+        if (shareDatabase.containsKey(shareType)) {
+            for (Share share : shareDatabase.get(shareType).values()) {
+                localRows.add(new Availability(share.getShareID(), share.getAvailableCapacity()));
+            }
+        }
+        report.add(new MarketAvailability(this.city, ListingStatus.COMPLETE, localRows.toArray(new Availability[0])));
+
+        // Query all remote markets at once so the latency is that of the slowest
+        // market rather than the sum. All of them share one overall deadline: a
+        // market still sending pages when it passes is reported PARTIAL with the
+        // rows received so far, one that sent nothing as NO_RESPONSE. Markets
+        // whose circuit breaker is open are reported without being asked.
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LIST_AVAILABILITY_DEADLINE_MS);
+        Map<String, List<Availability>> received = new LinkedHashMap<>();
+        Map<String, Future<MarketAvailability>> pending = new LinkedHashMap<>();
         for (Map.Entry<String, Integer> entry : remoteServers.entrySet()) {
             if (!entry.getKey().equalsIgnoreCase(this.city)) {
+                String market = entry.getKey();
                 int port = entry.getValue();
-                String udpResponse = sendUDPRequest("localhost", port, "LIST_AVAILABILITY " + shareType);
-                if (!udpResponse.isEmpty()) {
-                    availability.append(udpResponse).append("\n");
+                if (!peerMonitor.isAvailable(market)) {
+                    report.add(new MarketAvailability(market, ListingStatus.UNAVAILABLE, new Availability[0]));
+                    continue;
+                }
+                List<Availability> rows = Collections.synchronizedList(new ArrayList<>());
+                received.put(market, rows);
+                pending.put(market, remoteExecutor.submit(
+                        () -> listRemoteAvailability(market, port, shareType, deadline, rows)));
+            }
+        }
+
+        for (Map.Entry<String, Future<MarketAvailability>> entry : pending.entrySet()) {
+            String market = entry.getKey();
+            try {
+                report.add(entry.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+                peerMonitor.recordSuccess(market);
+            } catch (TimeoutException e) {
+                entry.getValue().cancel(true);
+                Availability[] rows;
+                List<Availability> soFar = received.get(market);
+                synchronized (soFar) {
+                    rows = soFar.toArray(new Availability[0]);
+                }
+                if (rows.length == 0) {
+                    peerMonitor.recordFailure(market);
                 }
+                report.add(new MarketAvailability(market,
+                        rows.length == 0 ? ListingStatus.NO_RESPONSE : ListingStatus.PARTIAL, rows));
+            } catch (Exception e) {
+                peerMonitor.recordFailure(market);
+                report.add(new MarketAvailability(market, ListingStatus.NO_RESPONSE, new Availability[0]));
             }
         }
-        return availability.toString().trim();
+        return report.toArray(new MarketAvailability[0]);
+    }
+
+    /**
+     * Pulls a remote market's listing page by page into rows, keeping only
+     * the current page in flight. Fails if the first page does not arrive
+     * before the deadline (System.nanoTime()); if a later page is late, or the listing exceeds
+     * LIST_AVAILABILITY_MAX_ROWS, the rows received so far are returned,
+     * marked partial.
+     */
+    private MarketAvailability listRemoteAvailability(String market, int port, String shareType, long deadline,
+                                                      List<Availability> rows)
+            throws IOException, TimeoutException {
+        ListingStatus status = ListingStatus.COMPLETE;
+        String continuation = "";
+        do {
+            if (rows.size() >= LIST_AVAILABILITY_MAX_ROWS) {
+                status = ListingStatus.PARTIAL;
+                break;
+            }
+            WireProtocol.Reply page;
+            try {
+                page = udpClient.callAdaptive("localhost", port, WireProtocol.Request.listAvailability(shareType,
+                        continuation), Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch (IOException | TimeoutException e) {
+                if (continuation.isEmpty()) {
+                    throw e;
+                }
+                status = ListingStatus.PARTIAL;
+                break;
+            }
+            if (!page.isOk()) {
+                break;
+            }
+            WireProtocol.forEachAvailabilityRow(page.getBody(), (shareID, available) -> {
+                if (rows.size() < LIST_AVAILABILITY_MAX_ROWS) {
+                    rows.add(new Availability(shareID, available));
+                }
+            });
+            continuation = page.getContinuation();
+        } while (!continuation.isEmpty());
+        synchronized (rows) {
+            return new MarketAvailability(market, status, rows.toArray(new Availability[0]));
+        }
     }
 
     @Override
-    public synchronized String swapShares(String buyerID, String oldShareID, String oldShareType,
+    public Result swapShares(String buyerID, String oldShareID, String oldShareType,
                                           String newShareID, String newShareType) {
         // 1. Check if share types match
         if (!oldShareType.equals(newShareType)) {
             logAction("Swap Shares", "BuyerID: " + buyerID + ", OldShareID: " + oldShareID +
                     ", NewShareID: " + newShareID, false);
-            return "Swap failed. Share types must be the same.";
+            return Results.of(ResultCode.TYPE_MISMATCH, city);
         }
 
         // 2. Check if buyer owns the old share
-        String uniqueOldKey = oldShareType + "-" + oldShareID;
-        if (!buyerHoldings.containsKey(buyerID) ||
-                !buyerHoldings.get(buyerID).containsKey(uniqueOldKey)) {
+        ShareKey uniqueOldKey = shareKeys.find(oldShareType, oldShareID);
+        if (uniqueOldKey == null || !buyerHoldings.contains(buyerID, uniqueOldKey)) {
             logAction("Swap Shares", "BuyerID: " + buyerID + ", OldShareID: " + oldShareID, false);
-            return "Swap failed. You do not own this share.";
+            return Results.of(ResultCode.NOT_OWNED, city);
         }
 
-        // 3. Get quantity of old shares
-        int ownedShareCount = buyerHoldings.get(buyerID).get(uniqueOldKey);
-
-        // 4. Determine target market from new share ID (first letter)
-        String targetCity = "";
-        if (newShareID.startsWith("N")) {
-            targetCity = "NewYork";
-        } else if (newShareID.startsWith("L")) {
-            targetCity = "London";
-        } else if (newShareID.startsWith("T")) {
-            targetCity = "Tokyo";
-        } else {
+        // 4. Determine target market from the new share ID's location code
+        String targetCity = directory.marketOf(newShareID);
+        if (targetCity == null) {
             logAction("Swap Shares", "BuyerID: " + buyerID + ", NewShareID: " + newShareID, false);
-            return "Swap failed. Invalid new share ID format.";
+            return Results.of(ResultCode.UNKNOWN_MARKET, city);
         }
 
         // 5. If target is the same as current market, handle locally
-        System.out.println("Checking targetCity and current city"+this.city+" targetCity: "+targetCity);
         if (targetCity.equals(this.city)) {
-            return handleLocalSwap(buyerID, oldShareID, oldShareType, newShareID, ownedShareCount);
+            return handleLocalSwap(buyerID, oldShareID, oldShareType, newShareID);
         }
         // 6. Otherwise, perform cross-market swap using UDP
-        return performCrossMarketSwap(buyerID, oldShareID, oldShareType, newShareID, newShareType,
-                ownedShareCount, targetCity);
+        return performCrossMarketSwap(buyerID, oldShareID, oldShareType, newShareID, newShareType, targetCity);
     }
 
-    // Helper method for local swap
-    private String handleLocalSwap(String buyerID, String oldShareID, String shareType,
-                                   String newShareID, int shareCount) {
-        String uniqueOldKey = shareType + "-" + oldShareID;
-        String uniqueNewKey = shareType + "-" + newShareID;
+    // Helper method for local swap. Runs under the old share, new share and buyer locks,
+    // which are released before waiting for the journal
+    private Result handleLocalSwap(String buyerID, String oldShareID, String shareType,
+                                   String newShareID) {
+        ShareKey uniqueOldKey = shareKeys.find(shareType, oldShareID);
+        ShareKey uniqueNewKey = shareKeys.find(shareType, newShareID);
+        int shareCount;
+        long newHold;
+        boolean credited;
+        CompletableFuture<Void> outgoing;
+        CompletableFuture<Void> incoming = null;
+        try (InventoryJournal.Gate gate = enterJournal();
+             StripedLock.Held ignored = locks.lockAll(uniqueOldKey, uniqueNewKey, StripedLock.buyerKey(buyerID))) {
+            // Check if new share exists
+            if (uniqueNewKey == null || !shareDatabase.containsKey(shareType) ||
+                    !shareDatabase.get(shareType).containsKey(newShareID)) {
+                logAction("Local Swap", "BuyerID: " + buyerID + ", NewShareID: " + newShareID, false);
+                return Results.of(ResultCode.NOT_FOUND, city);
+            }
 
-        // Check if new share exists and has enough capacity
-        if (!shareDatabase.containsKey(shareType) ||
-                !shareDatabase.get(shareType).containsKey(newShareID)) {
-            logAction("Local Swap", "BuyerID: " + buyerID + ", NewShareID: " + newShareID, false);
-            return "Swap failed. New share not found.";
+            // Perform the swap through the same holds as a cross-market swap
+            // 1. Take the old shares out of the buyer's holdings
+            SwapReservations.Hold oldHold = uniqueOldKey == null ? null : holdOutgoing(buyerID, uniqueOldKey);
+            if (oldHold == null) {
+                logAction("Local Swap", "BuyerID: " + buyerID + ", OldShareID: " + oldShareID, false);
+                return Results.of(ResultCode.NOT_OWNED, city);
+            }
+            shareCount = oldHold.count;
+
+            // 2. Reserve capacity of new shares
+            newHold = reserveSwap(buyerID, shareType, newShareID, shareCount);
+            if (newHold < 0) {
+                abortOutgoing(oldHold);
+                logAction("Local Swap", "BuyerID: " + buyerID + ", NewShareID: " + newShareID, false);
+                return Results.of(ResultCode.NOT_ENOUGH_AVAILABLE, city);
+            }
+
+            // 3. Return old shares to the pool and credit the new ones
+            outgoing = releaseOutgoing(oldHold);
+            SwapReservations.Hold hold = reservations.takeForCommit(newHold);
+            credited = hold != null;
+            if (credited) {
+                incoming = creditIncoming(hold);
+            }
         }
+        boolean durable = awaitJournal(outgoing);
+        if (!credited || !awaitJournal(incoming) || !durable) {
+            return journalFailed("Local Swap", "BuyerID: " + buyerID + ", OldShareID: " + oldShareID +
+                    ", NewShareID: " + newShareID);
+        }
+        reservations.completeCommit(newHold);
 
-        Share newShare = shareDatabase.get(shareType).get(newShareID);
-        if (newShare.getAvailableCapacity() < shareCount) {
-            logAction("Local Swap", "BuyerID: " + buyerID + ", NewShareID: " + newShareID, false);
-            return "Swap failed. Not enough new shares available.";
+        logAction("Local Swap", "BuyerID: " + buyerID + ", OldShareID: " + oldShareID +
+                ", NewShareID: " + newShareID + ", Quantity: " + shareCount, true, true);
+        return Results.success(city, shareType, shareCount);
+    }
+
+    // Helper method for cross-market swap. No lock is held across the UDP calls:
+    // the old holding is debited in a short critical section first, the remote
+    // market is contacted unlocked, and the debit is then committed or rolled back.
+    private Result performCrossMarketSwap(String buyerID, String oldShareID, String oldShareType,
+                                          String newShareID, String newShareType,
+                                          String targetMarket) {
+        int targetPort = getUDPPortForMarket(targetMarket);
+        if (targetPort == -1) {
+            logAction("Cross-Market Swap", "BuyerID: " + buyerID + ", Target: " + targetMarket, false);
+            return Results.of(ResultCode.UNKNOWN_MARKET, targetMarket);
+        }
+        if (!peerMonitor.isAvailable(targetMarket)) {
+            logAction("Cross-Market Swap", "BuyerID: " + buyerID + ", Target: " + targetMarket + " unavailable", false);
+            return Results.of(ResultCode.MARKET_UNAVAILABLE, targetMarket);
         }
 
-        // Perform the swap
-        // 1. Return old shares to available pool
-        Share oldShare = shareDatabase.get(shareType).get(oldShareID);
-        oldShare.increaseCapacity(shareCount);
+        // First step: take the old shares out of the buyer's holdings so a
+        // concurrent sell or swap cannot spend them while the remote leg runs
+        ShareKey uniqueOldKey = shareKeys.find(oldShareType, oldShareID);
+        SwapReservations.Hold oldHold = uniqueOldKey == null ? null : holdOutgoing(buyerID, uniqueOldKey);
+        if (oldHold == null) {
+            logAction("Cross-Market Swap", "BuyerID: " + buyerID + ", OldShareID: " + oldShareID, false);
+            return Results.of(ResultCode.NOT_OWNED, city);
+        }
+        int shareCount = oldHold.count;
 
-        // 2. Remove old shares from buyer holdings
-        buyerHoldings.get(buyerID).remove(uniqueOldKey);
+        boolean committed = false;
+        long remoteHold = -1;
+        boolean commitSent = false;
+        try {
+            // Second step: reserve the new shares on the target market; the
+            // capacity stays set aside for us until we commit, abort or the hold expires
+            WireProtocol.Request reserveRequest =
+                    WireProtocol.Request.reserveSwap(buyerID, newShareID, newShareType, shareCount);
+            WireProtocol.Reply reserveResponse = sendUDPRequest(targetMarket, targetPort, reserveRequest);
 
-        // 3. Reduce capacity of new shares
-        newShare.reduceCapacity(shareCount);
+            if (!reserveResponse.isOk()) {
+                logAction("Cross-Market Swap", "BuyerID: " + buyerID + ", Target: " + targetMarket, false);
+                return reserveResponse.getStatus() == WireProtocol.Status.NOT_AVAILABLE
+                        ? Results.of(ResultCode.NOT_ENOUGH_AVAILABLE, targetMarket)
+                        : Results.failed(targetMarket, reserveResponse.getBody());
+            }
+            remoteHold = Long.parseLong(reserveResponse.getBody());
+
+            // Third step: commit the reservation on the target market
+            WireProtocol.Request commitRequest = WireProtocol.Request.commitSwap(remoteHold);
+            commitSent = true;
+            WireProtocol.Reply swapResponse;
+            try {
+                swapResponse = udpClient.callAdaptive("localhost", targetPort, commitRequest, SWAP_CALL_DEADLINE_MS);
+            } catch (IOException | TimeoutException e) {
+                peerMonitor.recordFailure(targetMarket);
+                swapResponse = null;
+            }
+            // A refused commit is only rolled back once the target confirms it holds nothing for us
+            SwapReservations.Outcome outcome = swapResponse == null ? null
+                    : swapResponse.isOk() ? SwapReservations.Outcome.COMMITTED
+                    : querySwapOutcome(targetPort, remoteHold);
+            if (outcome == SwapReservations.Outcome.NOT_COMMITTED) {
+                logAction("Cross-Market Swap", "BuyerID: " + buyerID + ", Target: " + targetMarket, false);
+                return Results.failed(targetMarket, swapResponse.getBody());
+            }
+            if (outcome != SwapReservations.Outcome.COMMITTED) {
+                // The target may or may not have committed; keep the old shares held until it tells us which
+                committed = true;
+                long pendingHold = remoteHold;
+                remoteExecutor.submit(() -> resolveCommit(oldHold, targetMarket, targetPort, pendingHold, commitRequest));
+                logAction("Cross-Market Swap", "BuyerID: " + buyerID + ", Target: " + targetMarket +
+                        ", Outcome pending", false);
+                return Results.pending(targetMarket, oldShareType, shareCount);
+            }
 
-        // 4. Add new shares to buyer holdings
-        buyerHoldings.get(buyerID).put(uniqueNewKey, shareCount);
+            // Commit our side: return old shares to the pool
+            committed = true;
+            if (!commitOutgoing(oldHold)) {
+                return journalFailed("Cross-Market Swap", "BuyerID: " + buyerID + ", OldShareID: " + oldShareID);
+            }
 
-        logAction("Local Swap", "BuyerID: " + buyerID + ", OldShareID: " + oldShareID +
-                ", NewShareID: " + newShareID + ", Quantity: " + shareCount, true);
-        return "Swap successful. Swapped " + shareCount + " of " + uniqueOldKey +
-                " for " + shareCount + " of " + uniqueNewKey;
+            logAction("Cross-Market Swap", "BuyerID: " + buyerID + ", OldShareID: " + oldShareID +
+                    ", NewShareID: " + newShareID + ", Target: " + targetMarket, true, true);
+            return Results.success(targetMarket, newShareType, shareCount);
+        } catch (Exception e) {
+            logAction("Cross-Market Swap", "BuyerID: " + buyerID + ", Error: " + e.getMessage(), false);
+            return Results.failed(targetMarket, e.getMessage());
+        } finally {
+            if (!committed) {
+                // Give the old shares back; release the remote hold early unless a
+                // commit may already have reached the target (it expires otherwise)
+                abortOutgoing(oldHold);
+                if (remoteHold >= 0 && !commitSent) {
+                    sendUDPRequest(targetMarket, targetPort, WireProtocol.Request.abortSwap(remoteHold));
+                }
+            }
+        }
     }
 
-    // Helper method for cross-market swap
-    private String performCrossMarketSwap(String buyerID, String oldShareID, String oldShareType,
-                                          String newShareID, String newShareType, int shareCount,
-                                          String targetMarket) {
+    /**
+     * Settles a swap whose commit got no usable reply. Asks the target what
+     * became of the hold and resends the commit (same request ID) while the
+     * hold is still open there; the old shares are only released or given
+     * back on a definite answer. If none arrives within SWAP_RESOLVE_WINDOW_MS
+     * the old shares stay held and the swap is logged as unresolved.
+     */
+    private void resolveCommit(SwapReservations.Hold oldHold, String targetMarket, int targetPort, long remoteHold,
+                               WireProtocol.Request commitRequest) {
+        long deadline = System.currentTimeMillis() + SWAP_RESOLVE_WINDOW_MS;
+        while (System.currentTimeMillis() < deadline) {
+            SwapReservations.Outcome outcome = querySwapOutcome(targetPort, remoteHold);
+            if (outcome == SwapReservations.Outcome.OPEN) {
+                try {
+                    if (udpClient.callAdaptive("localhost", targetPort, commitRequest, SWAP_CALL_DEADLINE_MS).isOk()) {
+                        outcome = SwapReservations.Outcome.COMMITTED;
+                    }
+                } catch (IOException | TimeoutException e) {
+                    // Asked again on the next round
+                }
+            }
+            if (outcome == SwapReservations.Outcome.COMMITTED || outcome == SwapReservations.Outcome.NOT_COMMITTED) {
+                boolean success = outcome == SwapReservations.Outcome.COMMITTED;
+                if (success) {
+                    commitOutgoing(oldHold);
+                } else {
+                    abortOutgoing(oldHold);
+                }
+                logAction("Cross-Market Swap", "BuyerID: " + oldHold.buyerID + ", Target: " + targetMarket +
+                        ", Resolved: " + (success ? "committed" : "rolled back"), success, true);
+                return;
+            }
+            if (outcome == SwapReservations.Outcome.UNKNOWN) {
+                break;
+            }
+            try {
+                Thread.sleep(SWAP_RESOLVE_RETRY_MS);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        // Guessing either way could lose or duplicate shares; leave it for an operator
+        reservations.recordUnresolved();
+        logAction("Cross-Market Swap", "BuyerID: " + oldHold.buyerID + ", Target: " + targetMarket +
+                ", Hold: " + remoteHold + ", Unresolved: old shares " + oldHold.key + " x" + oldHold.count +
+                " stay held", false, true);
+    }
+
+    // Asks the target what became of a swap hold; null if it did not give a usable answer
+    private SwapReservations.Outcome querySwapOutcome(int targetPort, long remoteHold) {
         try {
+            WireProtocol.Reply reply = udpClient.callAdaptive("localhost", targetPort,
+                    WireProtocol.Request.swapStatus(remoteHold), SWAP_CALL_DEADLINE_MS);
+            return reply.isOk() ? SwapReservations.Outcome.valueOf(reply.getBody()) : null;
+        } catch (IOException | TimeoutException | IllegalArgumentException e) {
+            return null;
+        }
+    }
 
-//            System.out.println("performCrossMarketSwap targetMarket: "+targetMarket);
-            // First step: Check if target market has the requested share with enough capacity using UDP
-            String checkRequest = "CHECK_SWAP_AVAILABILITY " + newShareID + " " + newShareType + " " + shareCount;
-            int targetPort = getUDPPortForMarket(targetMarket);
+    // Sends the request with adaptive timeouts and retries; a market that never answers yields FAILED
+    private WireProtocol.Reply sendUDPRequest(String market, int port, WireProtocol.Request request) {
+        try {
+            WireProtocol.Reply reply = udpClient.callAdaptive("localhost", port, request, SWAP_CALL_DEADLINE_MS);
+            peerMonitor.recordSuccess(market);
+            return reply;
+        } catch (IOException | TimeoutException e) {
+            peerMonitor.recordFailure(market);
+            System.err.println("No UDP reply from " + market + ": " + e.getMessage());
+            return new WireProtocol.Reply(WireProtocol.Status.FAILED, "No response from market");
+        }
+    }
 
-            if (targetPort == -1) {
-                logAction("Cross-Market Swap", "BuyerID: " + buyerID + ", Target: " + targetMarket, false);
-                return "Swap failed. Invalid target market.";
+    /**
+     * Incoming leg of a cross-market swap requested over UDP: claims the new
+     * shares and credits them to the buyer. Returns false if not enough are
+     * left or the credit could not be journaled.
+     */
+    public boolean creditSwappedShares(String buyerID, String shareType, String shareID, int shareCount) {
+        CompletableFuture<Void> durable;
+        try (InventoryJournal.Gate gate = enterJournal();
+             StripedLock.Held ignored = locks.lockAll(shareKeys.find(shareType, shareID),
+                     StripedLock.buyerKey(buyerID))) {
+            Share share = getLocalShare(shareType, shareID);
+            if (share == null || !share.tryReserve(shareCount)) {
+                return false;
             }
+            updateHolder(share, buyerID, true);
+            buyerHoldings.add(buyerID, shareKeys.intern(shareType, shareID), shareCount);
+            durable = journal(InventoryJournal.Type.SWAP_IN, buyerID, shareType, shareID, shareCount);
+        }
+        return awaitJournal(durable);
+    }
 
-            String availabilityResponse = sendUDPRequest("localhost", targetPort, checkRequest);
+    /**
+     * First phase of an incoming swap leg: sets shareCount units of the share
+     * aside for the buyer. Returns the hold ID, or -1 if the share does not
+     * exist or has too little capacity left.
+     */
+    public long reserveSwap(String buyerID, String shareType, String shareID, int shareCount) {
+        Share share = getLocalShare(shareType, shareID);
+        if (share == null) {
+            return -1;
+        }
+        try (InventoryJournal.Gate gate = enterJournal()) {
+            if (!share.tryReserve(shareCount)) {
+                return -1;
+            }
+            return reservations.place(SwapReservations.Kind.INCOMING, buyerID, share,
+                    shareKeys.intern(shareType, shareID), shareCount).getId();
+        }
+    }
 
-            if (!availabilityResponse.startsWith("AVAILABLE")) {
-                logAction("Cross-Market Swap", "BuyerID: " + buyerID + ", Target: " + targetMarket, false);
-                return "Swap failed. " + availabilityResponse;
+    /**
+     * Second phase: credits the reserved shares to the buyer. Returns the
+     * hold, or null if it expired, was aborted, is unknown or the commit
+     * could not be journaled.
+     */
+    public SwapReservations.Hold commitSwap(long holdId) {
+        CompletableFuture<Void> durable;
+        SwapReservations.Hold hold;
+        try (InventoryJournal.Gate gate = enterJournal()) {
+            hold = reservations.takeForCommit(holdId);
+            if (hold == null) {
+                return null;
             }
+            durable = creditIncoming(hold);
+        }
+        // Not durable: the hold stays reported as OPEN, the requester never learns COMMITTED
+        if (!awaitJournal(durable)) {
+            return null;
+        }
+        reservations.completeCommit(holdId);
+        return hold;
+    }
 
-            // Second step: Execute the swap
-            String swapRequest = "EXECUTE_SWAP " + buyerID + " " + oldShareID + " " + oldShareType +
-                    " " + newShareID + " " + newShareType + " " + shareCount;
-            String swapResponse = sendUDPRequest("localhost", targetPort, swapRequest);
+    // Credits a hold taken for commit to its buyer; caller is inside the journal gate
+    private CompletableFuture<Void> creditIncoming(SwapReservations.Hold hold) {
+        CompletableFuture<Void> durable;
+        try (StripedLock.Held ignored = locks.lockAll(hold.key, StripedLock.buyerKey(hold.buyerID))) {
+            buyerHoldings.add(hold.buyerID, hold.key, hold.count);
+            updateHolder(hold.share, hold.buyerID, true);
+            // The hold ID goes into the record so the outcome survives a restart
+            durable = journal(InventoryJournal.Type.SWAP_IN, hold.buyerID, hold.key.getShareType(),
+                    hold.key.getShareID(), hold.count, hold.getId());
+        }
+        reservations.recordCommit();
+        return durable;
+    }
 
-            if (swapResponse.startsWith("SUCCESS")) {
-                // Update local state - remove old shares from buyer
-                String uniqueOldKey = oldShareType + "-" + oldShareID;
-                buyerHoldings.get(buyerID).remove(uniqueOldKey);
+    // What became of an incoming swap hold, for requesters that lost the commit reply
+    public SwapReservations.Outcome getSwapOutcome(long holdId) {
+        return reservations.outcome(holdId);
+    }
 
-                // Return old shares to pool
-                shareDatabase.get(oldShareType).get(oldShareID).increaseCapacity(shareCount);
+    // Releases a reservation the requesting market gave up on; false if it was already gone
+    public boolean abortSwap(long holdId) {
+        try (InventoryJournal.Gate gate = enterJournal()) {
+            SwapReservations.Hold hold = reservations.take(holdId, SwapReservations.Kind.INCOMING);
+            if (hold == null) {
+                return false;
+            }
+            hold.share.release(hold.count);
+            reservations.recordAbort();
+            return true;
+        }
+    }
 
-                logAction("Cross-Market Swap", "BuyerID: " + buyerID + ", OldShareID: " + oldShareID +
-                        ", NewShareID: " + newShareID + ", Target: " + targetMarket, true);
-                return "Cross-market swap successful. " + swapResponse.substring(8);
-            } else {
-                logAction("Cross-Market Swap", "BuyerID: " + buyerID + ", Target: " + targetMarket, false);
-                return "Swap failed. " + swapResponse;
+    // Sweeper callback for reservations nobody committed or aborted in time
+    private boolean expireHold(SwapReservations.Hold expired) {
+        try (InventoryJournal.Gate gate = enterJournal()) {
+            if (reservations.take(expired.getId(), SwapReservations.Kind.INCOMING) == null) {
+                return false;
             }
-        } catch (Exception e) {
-            logAction("Cross-Market Swap", "BuyerID: " + buyerID + ", Error: " + e.getMessage(), false);
-            return "Cross-market swap failed: " + e.getMessage();
+            expired.share.release(expired.count);
+            return true;
         }
     }
 
-    private String sendUDPRequest(String host, int port, String message) {
-        try (DatagramSocket socket = new DatagramSocket()) {
-            byte[] buffer = message.getBytes();
-            InetAddress serverAddress = InetAddress.getByName(host);
+    // Takes the buyer's whole holding of the share aside for a swap; null if they hold none
+    private SwapReservations.Hold holdOutgoing(String buyerID, ShareKey key) {
+        try (InventoryJournal.Gate gate = enterJournal();
+             StripedLock.Held ignored = locks.lockAll(key, StripedLock.buyerKey(buyerID))) {
+            Integer shareCount = buyerHoldings.remove(buyerID, key);
+            if (shareCount == null) {
+                return null;
+            }
+            Share share = getLocalShare(key.getShareType(), key.getShareID());
+            return reservations.place(SwapReservations.Kind.OUTGOING, buyerID, share, key, shareCount);
+        }
+    }
 
-            DatagramPacket request = new DatagramPacket(buffer, buffer.length, serverAddress, port);
-            socket.send(request);
+    // The swap went through: the old shares go back to the pool. False if the journal write failed
+    private boolean commitOutgoing(SwapReservations.Hold hold) {
+        CompletableFuture<Void> durable;
+        try (InventoryJournal.Gate gate = enterJournal()) {
+            durable = releaseOutgoing(hold);
+        }
+        return awaitJournal(durable);
+    }
 
-            byte[] responseBuffer = new byte[4096];
-            DatagramPacket response = new DatagramPacket(responseBuffer, responseBuffer.length);
-            socket.receive(response);
+    // Returns the held old shares to the pool; caller is inside the journal gate
+    private CompletableFuture<Void> releaseOutgoing(SwapReservations.Hold hold) {
+        CompletableFuture<Void> durable;
+        reservations.take(hold.getId(), SwapReservations.Kind.OUTGOING);
+        if (hold.share != null) {
+            hold.share.release(hold.count);
+        }
+        // The buyer may have bought the old share again meanwhile
+        try (StripedLock.Held ignored = locks.lockAll(hold.key, StripedLock.buyerKey(hold.buyerID))) {
+            updateHolder(hold.share, hold.buyerID, buyerHoldings.contains(hold.buyerID, hold.key));
+            durable = journal(InventoryJournal.Type.SWAP_OUT, hold.buyerID, hold.key.getShareType(),
+                    hold.key.getShareID(), hold.count);
+        }
+        reservations.recordCommit();
+        return durable;
+    }
 
-            return new String(response.getData(), 0, response.getLength());
-        } catch (Exception e) {
-            e.printStackTrace();
-            return "";
+    // The swap failed: the buyer gets the old shares back
+    private void abortOutgoing(SwapReservations.Hold hold) {
+        try (InventoryJournal.Gate gate = enterJournal();
+             StripedLock.Held ignored = locks.lockAll(hold.key, StripedLock.buyerKey(hold.buyerID))) {
+            reservations.take(hold.getId(), SwapReservations.Kind.OUTGOING);
+            buyerHoldings.add(hold.buyerID, hold.key, hold.count);
+            reservations.recordAbort();
         }
     }
 
-    private ShareMarket.Server getRemoteServerRef(String marketName) {
-        try {
-            // Look up in CORBA Naming Service
+    // Snapshot and replay hooks for the journal; replay bypasses locks, logging and journaling
+    private final class JournalTarget implements InventoryJournal.Target {
+        @Override
+        public InventoryJournal.State captureState() {
+            InventoryJournal.State state = new InventoryJournal.State();
+            for (Map<String, Share> shares : shareDatabase.values()) {
+                for (Share share : shares.values()) {
+                    state.shares.add(new java.lang.Object[]{share.getShareType(), share.getShareID(),
+                            share.getAvailableCapacity(), share.getTotalCapacity()});
+                }
+            }
+            // Open swap holds are not journaled; a snapshot records them as if they were aborted
+            Map<ShareKey, Integer> reserved = new HashMap<>();
+            for (SwapReservations.Hold hold : reservations.open(SwapReservations.Kind.INCOMING)) {
+                reserved.merge(hold.key, hold.count, Integer::sum);
+            }
+            for (java.lang.Object[] row : state.shares) {
+                Integer held = reserved.get(shareKeys.find((String) row[0], (String) row[1]));
+                if (held != null) {
+                    row[2] = (Integer) row[2] + held;
+                }
+            }
+            Map<String, Map<ShareKey, Integer>> heldOut = new HashMap<>();
+            for (SwapReservations.Hold hold : reservations.open(SwapReservations.Kind.OUTGOING)) {
+                heldOut.computeIfAbsent(hold.buyerID, k -> new HashMap<>()).merge(hold.key, hold.count, Integer::sum);
+            }
+            for (String buyerID : buyerHoldings.buyerIDs()) {
+                Map<ShareKey, Integer> positions = buyerHoldings.copyOf(buyerID);
+                Map<ShareKey, Integer> held = heldOut.remove(buyerID);
+                if (held != null) {
+                    positions = new LinkedHashMap<>(positions);
+                    for (Map.Entry<ShareKey, Integer> entry : held.entrySet()) {
+                        positions.merge(entry.getKey(), entry.getValue(), Integer::sum);
+                    }
+                }
+                addHoldingRows(state, buyerID, positions);
+            }
+            heldOut.forEach((buyerID, positions) -> addHoldingRows(state, buyerID, positions));
+            state.committedSwaps.addAll(reservations.committedIds());
+            return state;
+        }
 
-//            System.out.println("getRemoteServerRef marketName: "+marketName);
-            org.omg.CORBA.Object objRef = orb.resolve_initial_references("NameService");
-            NamingContext ncRef = NamingContextHelper.narrow(objRef);
+        private void addHoldingRows(InventoryJournal.State state, String buyerID, Map<ShareKey, Integer> positions) {
+            for (Map.Entry<ShareKey, Integer> holding : positions.entrySet()) {
+                ShareKey key = holding.getKey();
+                state.holdings.add(new java.lang.Object[]{buyerID, key.getShareType(), key.getShareID(),
+                        holding.getValue()});
+            }
+        }
 
-//            System.out.println("assigning name in getRemoteServerRef marketName: "+marketName);
-            NameComponent[] name = { new NameComponent(marketName, "") };
-            org.omg.CORBA.Object obj = ncRef.resolve(name);
+        @Override
+        public void restoreState(InventoryJournal.State state) {
+            for (java.lang.Object[] row : state.shares) {
+                String shareType = (String) row[0];
+                String shareID = (String) row[1];
+                Share share = new Share(shareID, shareType, (Integer) row[2], (Integer) row[3], null);
+                shareDatabase.computeIfAbsent(shareType, k -> new ConcurrentSkipListMap<>()).put(shareID, share);
+                dateIndex.add(share);
+                shareKeys.intern(shareType, shareID);
+            }
+            for (java.lang.Object[] row : state.holdings) {
+                buyerHoldings.set((String) row[0], shareKeys.intern((String) row[1], (String) row[2]), (Integer) row[3]);
+                updateHolder(getLocalShare((String) row[1], (String) row[2]), (String) row[0], true);
+            }
+            for (long holdId : state.committedSwaps) {
+                reservations.restoreCommit(holdId);
+            }
+        }
 
-            return ShareMarket.ServerHelper.narrow(obj);
-        } catch (Exception e) {
-            System.err.println("ERROR: Could not get remote server reference for " + marketName);
-            e.printStackTrace();
-            return null;
+        @Override
+        public void replay(InventoryJournal.Entry entry) {
+            String shareType = entry.getShareType();
+            String shareID = entry.getShareID();
+            int count = entry.getCount();
+            Share share = getLocalShare(shareType, shareID);
+            // A swap-in also settles its hold; the holding change is a purchase
+            if (entry.getType() == InventoryJournal.Type.SWAP_IN && entry.getReference() != 0) {
+                reservations.restoreCommit(entry.getReference());
+            }
+            switch (entry.getType()) {
+                case ADD_SHARE:
+                    if (share == null) {
+                        Share added = new Share(shareID, shareType, count);
+                        shareDatabase.computeIfAbsent(shareType, k -> new ConcurrentSkipListMap<>()).put(shareID, added);
+                        dateIndex.add(added);
+                    }
+                    shareKeys.intern(shareType, shareID);
+                    return;
+                case REMOVE_SHARE:
+                    if (share != null) {
+                        shareDatabase.get(shareType).remove(shareID);
+                        dateIndex.remove(share);
+                    }
+                    return;
+                case SWAP_IN:
+                case PURCHASE:
+                    if (share != null) {
+                        share.reduceCapacity(count);
+                    }
+                    adjustHolding(share, entry.getBuyerID(), shareKeys.intern(shareType, shareID), count);
+                    return;
+                case SELL:
+                case SWAP_OUT:
+                    if (share != null) {
+                        share.release(count);
+                    }
+                    adjustHolding(share, entry.getBuyerID(), shareKeys.intern(shareType, shareID), -count);
+                    return;
+                default:
+            }
         }
-    }
 
-    // Helper method to get UDP port for a market
-    private static int getUDPPortForMarket(String marketName) {
-        switch (marketName) {
-            case "NewYork": return 5000;
-            case "London": return 5001;
-            case "Tokyo": return 5002;
-            default: return -1;
+        private void adjustHolding(Share share, String buyerID, ShareKey key, int delta) {
+            Integer owned = buyerHoldings.get(buyerID, key);
+            int quantity = (owned == null ? 0 : owned) + delta;
+            buyerHoldings.set(buyerID, key, quantity);
+            updateHolder(share, buyerID, quantity > 0);
         }
     }
+
+    private ShareMarket.Server getRemoteServerRef(String marketName) {
+        return remoteServerRefs.get(marketName);
+    }
+
+    // UDP port of a market from the directory; -1 if unknown
+    private int getUDPPortForMarket(String marketName) {
+        return directory.getUdpPort(marketName);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,89 @@
+package server;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed pool of locks that keys ({@link ShareKey}s, buyer IDs) are hashed onto.
+ * Unrelated keys usually land on different stripes and can be worked on in
+ * parallel, while the same key always maps to the same lock.
+ *
+ * Multi-key operations must go through {@link #lockAll(Object...)} which
+ * acquires the stripes in ascending index order, so two threads locking the
+ * same set of keys can never deadlock each other.
+ */
+public class StripedLock {
+    private static final int DEFAULT_STRIPES = 64;
+
+    private final ReentrantLock[] stripes;
+
+    public StripedLock() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public StripedLock(int stripeCount) {
+        // Round up to a power of two so the index is a simple mask
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    private int indexFor(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return h & (stripes.length - 1);
+    }
+
+    public static String buyerKey(String buyerID) {
+        return "B:" + buyerID;
+    }
+
+    /**
+     * Locks the stripes of all given keys in a deterministic order and returns
+     * a handle that releases them again. Keys sharing a stripe are locked once;
+     * null keys (e.g. a share that does not exist) are skipped.
+     */
+    public Held lockAll(Object... keys) {
+        int[] indexes = new int[keys.length];
+        int n = 0;
+        for (Object key : keys) {
+            if (key != null) {
+                indexes[n++] = indexFor(key);
+            }
+        }
+        indexes = Arrays.copyOf(indexes, n);
+        Arrays.sort(indexes);
+
+        int count = 0;
+        ReentrantLock[] locked = new ReentrantLock[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            if (i > 0 && indexes[i] == indexes[i - 1]) {
+                continue;
+            }
+            ReentrantLock lock = stripes[indexes[i]];
+            lock.lock();
+            locked[count++] = lock;
+        }
+        return new Held(locked, count);
+    }
+
+    public static final class Held implements AutoCloseable {
+        private final ReentrantLock[] locks;
+        private final int count;
+
+        private Held(ReentrantLock[] locks, int count) {
+            this.locks = locks;
+            this.count = count;
+        }
+
+        @Override
+        public void close() {
+            // Release in reverse acquisition order
+            for (int i = count - 1; i >= 0; i--) {
+                locks[i].unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Holds placed by the two-phase swap. A swap first sets both of its legs
+ * aside and then either commits or aborts each of them:
+ *
+ *   INCOMING  capacity of the new share is reserved for the buyer; commit
+ *             credits it to the buyer, abort or expiry returns it to the pool
+ *   OUTGOING  the buyer's old holding is taken out of their positions;
+ *             commit returns the capacity to the pool, abort restores it
+ *
+ * Every hold starts HELD and leaves that state exactly once: {@link #take(long, Kind)}
+ * removes it atomically, so a commit racing with an abort or the expiry
+ * sweep is decided by whichever removes it first. INCOMING holds expire
+ * after the TTL if the requesting market never commits or aborts them;
+ * OUTGOING holds are always resolved by the local swap that placed them.
+ *
+ * The target of a swap also remembers which INCOMING holds it committed, so
+ * a requester whose COMMIT_SWAP reply was lost can ask for the outcome
+ * instead of guessing ({@link #outcome(long)}). Committed IDs are journaled
+ * with the SWAP_IN record and kept for OUTCOME_RETENTION_MS; hold IDs start
+ * with the time they were placed, so their age is read off the ID itself.
+ */
+public class SwapReservations {
+
+    public enum Kind {
+        INCOMING, OUTGOING
+    }
+
+    // What the target knows about an INCOMING hold, as answered to SWAP_STATUS
+    public enum Outcome {
+        /** Still held, or its commit is not durable yet; ask again later. */
+        OPEN,
+        /** Committed and journaled; the buyer owns the new shares. */
+        COMMITTED,
+        /** Aborted, expired or lost in a restart; the capacity is back in the pool. */
+        NOT_COMMITTED,
+        /** Older than the retention period, nothing is known about it any more. */
+        UNKNOWN
+    }
+
+    // How long committed hold IDs are remembered for outcome queries
+    private static final long OUTCOME_RETENTION_MS = Long.getLong("dsms.swap.outcomeRetentionMs", 24 * 60 * 60 * 1000L);
+
+    public static final class Hold {
+        final long id;
+        final Kind kind;
+        final String buyerID;
+        final Share share;
+        final ShareKey key;
+        final int count;
+        final long deadline;
+
+        Hold(long id, Kind kind, String buyerID, Share share, ShareKey key, int count, long deadline) {
+            this.id = id;
+            this.kind = kind;
+            this.buyerID = buyerID;
+            this.share = share;
+            this.key = key;
+            this.count = count;
+            this.deadline = deadline;
+        }
+
+        public long getId() {
+            return id;
+        }
+    }
+
+    private final long ttlMs;
+    private final Map<Long, Hold> holds = new ConcurrentHashMap<>();
+    // Last hold ID handed out; see nextId()
+    private final AtomicLong lastId = new AtomicLong();
+    // Holds being committed (FALSE) or committed durably (TRUE), by ID; guarded by this
+    private final TreeMap<Long, Boolean> commits = new TreeMap<>();
+
+    private final AtomicLong placed = new AtomicLong();
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong aborted = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong unresolved = new AtomicLong();
+
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "swap-hold-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * @param onExpired called from the sweeper thread for each INCOMING hold
+     *                  past its deadline; it must {@link #take(long, Kind)} the hold and
+     *                  undo it, and return false if the hold was already gone
+     */
+    public SwapReservations(long ttlMs, Predicate<Hold> onExpired) {
+        this.ttlMs = ttlMs;
+        long period = Math.max(100, ttlMs / 2);
+        sweeper.scheduleWithFixedDelay(() -> expire(onExpired), period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public Hold place(Kind kind, String buyerID, Share share, ShareKey key, int count) {
+        long deadline = kind == Kind.INCOMING ? System.currentTimeMillis() + ttlMs : Long.MAX_VALUE;
+        Hold hold = new Hold(nextId(), kind, buyerID, share, key, count, deadline);
+        holds.put(hold.id, hold);
+        placed.incrementAndGet();
+        return hold;
+    }
+
+    // The placing time in the high bits, so IDs are not reused across restarts and
+    // their age can be read back; more than 65536 holds in a millisecond borrow from the next one
+    private long nextId() {
+        long stamp = System.currentTimeMillis() << 16;
+        return lastId.accumulateAndGet(stamp, (prev, now) -> Math.max(prev + 1, now));
+    }
+
+    // Removes the hold for commit or abort; null if it is unknown, of another kind, expired or already resolved
+    public Hold take(long id, Kind kind) {
+        Hold hold = holds.get(id);
+        return hold != null && hold.kind == kind && holds.remove(id, hold) ? hold : null;
+    }
+
+    public void recordCommit() {
+        committed.incrementAndGet();
+    }
+
+    /**
+     * Takes an INCOMING hold for commit and marks it as being committed in
+     * the same step, so {@link #outcome(long)} never finds it neither open
+     * nor committing. Call {@link #completeCommit(long)} once it is durable.
+     */
+    public synchronized Hold takeForCommit(long id) {
+        Hold hold = take(id, Kind.INCOMING);
+        if (hold != null) {
+            commits.put(id, Boolean.FALSE);
+        }
+        return hold;
+    }
+
+    // The commit is durable; from now on the hold is reported as COMMITTED
+    public synchronized void completeCommit(long id) {
+        commits.put(id, Boolean.TRUE);
+        commits.headMap(retiredBefore(System.currentTimeMillis())).clear();
+    }
+
+    // Re-learns a commit from the journal during recovery
+    public synchronized void restoreCommit(long id) {
+        if (!isRetired(id, System.currentTimeMillis())) {
+            commits.put(id, Boolean.TRUE);
+        }
+    }
+
+    public synchronized Outcome outcome(long id) {
+        Hold hold = holds.get(id);
+        if (hold != null && hold.kind == Kind.INCOMING) {
+            return Outcome.OPEN;
+        }
+        Boolean done = commits.get(id);
+        if (done != null) {
+            return done ? Outcome.COMMITTED : Outcome.OPEN;
+        }
+        return isRetired(id, System.currentTimeMillis()) ? Outcome.UNKNOWN : Outcome.NOT_COMMITTED;
+    }
+
+    // Committed hold IDs still within the retention period, e.g. for a snapshot
+    public synchronized List<Long> committedIds() {
+        commits.headMap(retiredBefore(System.currentTimeMillis())).clear();
+        List<Long> result = new ArrayList<>();
+        for (Map.Entry<Long, Boolean> entry : commits.entrySet()) {
+            if (entry.getValue()) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    private static boolean isRetired(long id, long now) {
+        return id < retiredBefore(now);
+    }
+
+    // Smallest hold ID placed within the retention period
+    private static long retiredBefore(long now) {
+        return (now - OUTCOME_RETENTION_MS) << 16;
+    }
+
+    public void recordAbort() {
+        aborted.incrementAndGet();
+    }
+
+    private void expire(Predicate<Hold> onExpired) {
+        long now = System.currentTimeMillis();
+        for (Hold hold : holds.values()) {
+            if (hold.deadline > now) {
+                continue;
+            }
+            try {
+                if (onExpired.test(hold)) {
+                    expired.incrementAndGet();
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Could not release expired swap hold " + hold.id + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Open holds of the given kind, e.g. to add them back into a snapshot
+    public Iterable<Hold> open(Kind kind) {
+        List<Hold> result = new ArrayList<>();
+        for (Hold hold : holds.values()) {
+            if (hold.kind == kind) {
+                result.add(hold);
+            }
+        }
+        return result;
+    }
+
+    // An outgoing leg whose remote outcome could not be learned; its hold stays open
+    public void recordUnresolved() {
+        unresolved.incrementAndGet();
+    }
+
+    public String getStats() {
+        return "Swap holds: open=" + holds.size() + ", placed=" + placed.get() + ", committed=" + committed.get() +
+                ", aborted=" + aborted.get() + ", expired=" + expired.get() + ", unresolved=" + unresolved.get();
+    }
+}
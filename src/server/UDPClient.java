@@ -0,0 +1,317 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-lived client for the inter-market UDP protocol. A small set of
+ * non-blocking DatagramChannels is shared by all callers; every request
+ * carries an ID (in the binary header, or as a "#&lt;id&gt; " prefix in text
+ * mode) and a single receiver thread hands each reply to the caller waiting
+ * on that ID, so many requests can be outstanding at once without opening a
+ * socket per call.
+ *
+ * Request IDs start from a random prefix so they are unique across all
+ * markets' clients; receivers use them to recognise resent mutating
+ * requests. A request that already carries an ID keeps it, so a caller
+ * resends by calling again with the same request.
+ *
+ * {@link #callAdaptive} bounds a call by a deadline instead of a fixed
+ * timeout: each attempt waits for the peer's RTT-derived timeout (see
+ * {@link PeerRtt}), doubled on every retry, with a random pause between
+ * attempts so that callers which timed out together do not resend together.
+ * Read-only requests can also be hedged (-Ddsms.udp.hedgeReads=true): if no
+ * reply has arrived by the peer's 95th percentile RTT, a second copy is sent
+ * and whichever reply comes first is used.
+ */
+public class UDPClient {
+    private static final int DEFAULT_CHANNELS = 2;
+    private static final int BUFFER_SIZE = WireProtocol.MAX_DATAGRAM_SIZE;
+
+    private final DatagramChannel[] channels;
+    private final Selector selector;
+    private final AtomicInteger nextChannel = new AtomicInteger();
+    // Random high bits keep IDs from different senders apart; stays positive for the text tag
+    private final AtomicLong nextRequestId =
+            new AtomicLong(ThreadLocalRandom.current().nextLong(1, 1L << 22) << 40);
+    private final Map<Long, CompletableFuture<WireProtocol.Reply>> pending = new ConcurrentHashMap<>();
+    private final Map<String, InetSocketAddress> addresses = new ConcurrentHashMap<>();
+    private final Map<String, PeerRtt> peers = new ConcurrentHashMap<>();
+
+    private final long minTimeoutMs = Long.getLong("dsms.udp.minTimeoutMs", 100);
+    private final long maxTimeoutMs = Long.getLong("dsms.udp.maxTimeoutMs", 3000);
+    private final long initialTimeoutMs = Long.getLong("dsms.udp.initialTimeoutMs", 1000);
+    private final int maxAttempts = Integer.getInteger("dsms.udp.attempts", 4);
+    private final boolean hedgeReads = Boolean.getBoolean("dsms.udp.hedgeReads");
+
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong malformedReplies = new AtomicLong();
+
+    // Direct send buffer reused by each calling thread
+    private final ThreadLocal<ByteBuffer> sendBuffers =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    public UDPClient() throws IOException {
+        this(DEFAULT_CHANNELS);
+    }
+
+    public UDPClient(int channelCount) throws IOException {
+        this.selector = Selector.open();
+        this.channels = new DatagramChannel[channelCount];
+        for (int i = 0; i < channelCount; i++) {
+            DatagramChannel channel = DatagramChannel.open();
+            channel.bind(null);
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ);
+            channels[i] = channel;
+        }
+
+        Thread receiver = new Thread(this::receiveLoop, "udp-client-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    /**
+     * Sends the request and waits for the matching reply. A timeout of 0
+     * waits indefinitely. The request is given a new ID unless it already
+     * has one from an earlier attempt.
+     */
+    public WireProtocol.Reply call(String host, int port, WireProtocol.Request request, long timeoutMs)
+            throws IOException, TimeoutException {
+        return attempt(host, port, request, timeoutMs, -1);
+    }
+
+    /**
+     * Sends the request, resending it under the same ID on timeout, until a
+     * reply arrives, maxAttempts attempts were made or deadlineMs has passed.
+     * Only requests the receiver deduplicates or that do not change state
+     * may be sent this way.
+     */
+    public WireProtocol.Reply callAdaptive(String host, int port, WireProtocol.Request request, long deadlineMs)
+            throws IOException, TimeoutException {
+        PeerRtt rtt = peer(host, port);
+        long deadline = System.currentTimeMillis() + deadlineMs;
+        long timeout = rtt.timeoutMs();
+        boolean hedge = hedgeReads && !request.getOpcode().isMutating();
+        for (int attempt = 1; ; attempt++) {
+            long remaining = deadline - System.currentTimeMillis();
+            try {
+                if (remaining <= 0) {
+                    throw new TimeoutException("No reply from " + host + ":" + port + " within " + deadlineMs + " ms");
+                }
+                return attempt(host, port, request, Math.min(timeout, remaining), hedge ? rtt.hedgeDelayMs() : -1);
+            } catch (TimeoutException e) {
+                if (attempt >= maxAttempts || deadline - System.currentTimeMillis() <= 0) {
+                    throw e;
+                }
+            }
+            retries.incrementAndGet();
+            timeout = Math.min(timeout * 2, maxTimeoutMs);
+            pause(ThreadLocalRandom.current().nextLong(timeout / 4 + 1));
+        }
+    }
+
+    // One attempt; a non-negative hedgeDelayMs sends a second copy if no reply came by then
+    private WireProtocol.Reply attempt(String host, int port, WireProtocol.Request request, long timeoutMs,
+                                       long hedgeDelayMs) throws IOException, TimeoutException {
+        // A reply to a resent request may belong to either copy, so only first sends give an RTT sample
+        boolean firstSend = request.getRequestId() == 0;
+        if (firstSend) {
+            request.setRequestId(nextRequestId.incrementAndGet());
+        }
+        long requestId = request.getRequestId();
+        PeerRtt rtt = peer(host, port);
+        InetSocketAddress target = address(host, port);
+        CompletableFuture<WireProtocol.Reply> reply = new CompletableFuture<>();
+        pending.put(requestId, reply);
+        try {
+            long start = System.nanoTime();
+            send(target, request);
+            WireProtocol.Reply result;
+            if (hedgeDelayMs >= 0 && (timeoutMs == 0 || hedgeDelayMs < timeoutMs)) {
+                try {
+                    result = reply.get(hedgeDelayMs, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    hedges.incrementAndGet();
+                    firstSend = false;
+                    send(target, request);
+                    result = await(reply, timeoutMs == 0 ? 0 : timeoutMs - hedgeDelayMs);
+                }
+            } else {
+                result = await(reply, timeoutMs);
+            }
+            if (firstSend) {
+                rtt.record(System.nanoTime() - start);
+            }
+            // Text replies carry no status field, derive it from the reply prefix
+            return result.getStatus() == null ? WireProtocol.Reply.fromText(request.getOpcode(), result.getBody()) : result;
+        } catch (TimeoutException e) {
+            rtt.recordTimeout();
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for UDP reply", e);
+        } catch (ExecutionException e) {
+            throw new IOException("UDP request failed", e.getCause());
+        } finally {
+            pending.remove(requestId);
+        }
+    }
+
+    private static WireProtocol.Reply await(CompletableFuture<WireProtocol.Reply> reply, long timeoutMs)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return timeoutMs > 0 ? reply.get(timeoutMs, TimeUnit.MILLISECONDS) : reply.get();
+    }
+
+    private static void pause(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted between UDP retries", e);
+        }
+    }
+
+    private PeerRtt peer(String host, int port) {
+        return peers.computeIfAbsent(host + ":" + port, k -> new PeerRtt(minTimeoutMs, maxTimeoutMs, initialTimeoutMs));
+    }
+
+    private InetSocketAddress address(String host, int port) {
+        return addresses.computeIfAbsent(host + ":" + port, k -> new InetSocketAddress(host, port));
+    }
+
+    private void send(SocketAddress target, WireProtocol.Request request) throws IOException {
+        ByteBuffer buffer = sendBuffers.get();
+        buffer.clear();
+        if (WireProtocol.useBinary()) {
+            WireProtocol.encodeRequest(request, buffer);
+        } else {
+            buffer.put(("#" + request.getRequestId() + " " + request.toText()).getBytes(StandardCharsets.UTF_8));
+        }
+        buffer.flip();
+
+        DatagramChannel channel = channels[Math.floorMod(nextChannel.getAndIncrement(), channels.length)];
+        channel.send(buffer, target);
+    }
+
+    private void receiveLoop() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        byte[] bytes = new byte[BUFFER_SIZE];
+        while (selector.isOpen()) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    DatagramChannel channel = (DatagramChannel) key.channel();
+                    // Drain everything that is queued on this channel
+                    while (true) {
+                        buffer.clear();
+                        if (channel.receive(buffer) == null) {
+                            break;
+                        }
+                        buffer.flip();
+                        // A malformed datagram is dropped without stopping the receiver
+                        try {
+                            if (WireProtocol.isBinary(buffer)) {
+                                dispatchBinary(buffer);
+                            } else {
+                                int length = buffer.remaining();
+                                buffer.get(bytes, 0, length);
+                                dispatchText(bytes, length);
+                            }
+                        } catch (RuntimeException e) {
+                            malformedReplies.incrementAndGet();
+                            System.err.println("Dropping malformed UDP reply: " + e);
+                        }
+                    }
+                }
+            } catch (ClosedSelectorException e) {
+                return;
+            } catch (IOException e) {
+                System.err.println("UDP client receive error: " + e.getMessage());
+            }
+        }
+    }
+
+    private void dispatchBinary(ByteBuffer buffer) {
+        long requestId = WireProtocol.peekRequestId(buffer);
+        CompletableFuture<WireProtocol.Reply> reply = pending.get(requestId);
+        if (reply == null) {
+            return; // late reply for a caller that already gave up
+        }
+        WireProtocol.Reply decoded = WireProtocol.decodeReply(buffer);
+        if (decoded == null) {
+            // Truncated or corrupt; the caller retransmits as if it was lost
+            malformedReplies.incrementAndGet();
+            return;
+        }
+        if (pending.remove(requestId, reply)) {
+            reply.complete(decoded);
+        }
+    }
+
+    private void dispatchText(byte[] bytes, int length) {
+        if (length == 0 || bytes[0] != '#') {
+            return; // not a tagged reply
+        }
+        long requestId = 0;
+        int i = 1;
+        while (i < length && bytes[i] != ' ') {
+            requestId = requestId * 10 + (bytes[i] - '0');
+            i++;
+        }
+        int start = Math.min(i + 1, length);
+        CompletableFuture<WireProtocol.Reply> reply = pending.remove(requestId);
+        if (reply != null) {
+            // Late replies for callers that already gave up are dropped; the
+            // status is filled in by the caller, who knows the opcode
+            reply.complete(new WireProtocol.Reply(null, new String(bytes, start, length - start, StandardCharsets.UTF_8)));
+        }
+    }
+
+    public int getOutstandingRequests() {
+        return pending.size();
+    }
+
+    // RTT statistics per peer, keyed by host:port
+    public Map<String, PeerRtt> getPeers() {
+        return peers;
+    }
+
+    public String getStats() {
+        StringBuilder stats = new StringBuilder("UDP client: outstanding=").append(pending.size())
+                .append(", retries=").append(retries.get()).append(", hedges=").append(hedges.get())
+                .append(", malformed=").append(malformedReplies.get());
+        for (Map.Entry<String, PeerRtt> peer : peers.entrySet()) {
+            stats.append("\n  ").append(peer.getKey()).append(' ').append(peer.getValue().getStats());
+        }
+        return stats.toString();
+    }
+
+    public void close() throws IOException {
+        selector.close();
+        for (DatagramChannel channel : channels) {
+            channel.close();
+        }
+    }
+}
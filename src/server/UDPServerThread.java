@@ -4,153 +4,336 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.util.HashMap;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class UDPServerThread extends Thread {
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    private static final int MAX_DATAGRAM_SIZE = WireProtocol.MAX_DATAGRAM_SIZE;
+
+    // Bytes of listing rows per LIST_AVAILABILITY page, leaving room for header and token
+    private static final int PAGE_BUDGET = MAX_DATAGRAM_SIZE - 512;
+
+    // Reply buffer reused by each worker for binary replies
+    private static final ThreadLocal<ByteBuffer> REPLY_BUFFERS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAX_DATAGRAM_SIZE));
+
     private final int udpPort;
     private final ShareMarketServerImpl serverImpl;
-    private final Map<String, Map<String, Share>> shareDatabase;
+    private final Map<String, ConcurrentNavigableMap<String, Share>> shareDatabase;
+
+    // Requests are received on this thread and processed by a bounded worker pool
+    private final BlockingQueue<Runnable> requestQueue;
+    private final ThreadPoolExecutor workers;
+
+    // Replies to mutating requests, replayed when the sender resends after a lost reply
+    private final IdempotencyCache<Long, WireProtocol.Reply> replies = new IdempotencyCache<>(
+            Integer.getInteger("dsms.udp.dedupEntries", 100_000), Long.getLong("dsms.udp.dedupTtlMs", 120_000));
 
-    public UDPServerThread(int udpPort, ShareMarketServerImpl serverImpl, Map<String, Map<String, Share>> shareDatabase) {
+    private final AtomicLong processedRequests = new AtomicLong();
+    private final AtomicLong backpressureEvents = new AtomicLong();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    public UDPServerThread(int udpPort, ShareMarketServerImpl serverImpl, Map<String, ConcurrentNavigableMap<String, Share>> shareDatabase) {
+        this(udpPort, serverImpl, shareDatabase, Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public UDPServerThread(int udpPort, ShareMarketServerImpl serverImpl, Map<String, ConcurrentNavigableMap<String, Share>> shareDatabase,
+                           int workerCount, int queueCapacity) {
         this.udpPort = udpPort;
         this.serverImpl = serverImpl;
         this.shareDatabase = shareDatabase;
+        this.requestQueue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicInteger workerIndex = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS, requestQueue, r -> {
+            Thread t = new Thread(r, "udp-worker-" + udpPort + "-" + workerIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        // Workers take straight from the queue that dispatch() fills
+        this.workers.prestartAllCoreThreads();
+        serverImpl.addStatsSource(this::getStats);
     }
 
     @Override
     public void run() {
         try (DatagramSocket socket = new DatagramSocket(udpPort)) {
-            System.out.println("UDP Server is running on port " + udpPort);
-            byte[] buffer = new byte[4096];
+            System.out.println("UDP Server is running on port " + udpPort + " with " + workers.getCorePoolSize() + " workers");
+            byte[] buffer = new byte[MAX_DATAGRAM_SIZE];
 
             while (true) {
                 DatagramPacket request = new DatagramPacket(buffer, buffer.length);
                 socket.receive(request);
 
-                String receivedMessage = new String(request.getData(), 0, request.getLength());
+                // Copy out of the receive buffer, it is reused for the next packet
+                byte[] data = Arrays.copyOf(request.getData(), request.getLength());
                 InetAddress clientAddress = request.getAddress();
                 int clientPort = request.getPort();
 
-                // Process request and generate response
-                String responseMessage = processUDPRequest(receivedMessage);
-
-                // Send response back
-                byte[] responseBytes = responseMessage.getBytes();
-                DatagramPacket response = new DatagramPacket(responseBytes, responseBytes.length,
-                        clientAddress, clientPort);
-                socket.send(response);
+                dispatch(() -> handleRequest(socket, data, clientAddress, clientPort));
             }
         } catch (IOException e) {
             System.err.println("UDP Server Error: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    // Hands the request to a worker; when the queue is full the receiver blocks,
+    // so excess datagrams back up in the socket buffer instead of in memory
+    private void dispatch(Runnable task) {
+        int depth = requestQueue.size();
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+        if (!requestQueue.offer(task)) {
+            backpressureEvents.incrementAndGet();
+            try {
+                requestQueue.put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void handleRequest(DatagramSocket socket, byte[] data, InetAddress clientAddress, int clientPort) {
+        try {
+            DatagramPacket response = WireProtocol.isBinary(ByteBuffer.wrap(data))
+                    ? handleBinaryRequest(data, clientAddress, clientPort)
+                    : handleTextRequest(data, clientAddress, clientPort);
+            socket.send(response);
+        } catch (Exception e) {
+            System.err.println("UDP request failed: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            processedRequests.incrementAndGet();
+        }
+    }
+
+    private DatagramPacket handleBinaryRequest(byte[] data, InetAddress clientAddress, int clientPort) {
+        WireProtocol.Request request = WireProtocol.decodeRequest(ByteBuffer.wrap(data));
+        long requestId = request == null ? WireProtocol.peekRequestId(ByteBuffer.wrap(data)) : request.getRequestId();
+        WireProtocol.Opcode opcode = request == null ? null : request.getOpcode();
+        WireProtocol.Reply reply = request == null
+                ? new WireProtocol.Reply(WireProtocol.Status.INVALID_REQUEST, "INVALID_REQUEST")
+                : processOnce(requestId, request);
+
+        ByteBuffer buffer = REPLY_BUFFERS.get();
+        buffer.clear();
+        try {
+            WireProtocol.encodeReply(requestId, opcode, reply, buffer);
+        } catch (BufferOverflowException e) {
+            buffer.clear();
+            WireProtocol.encodeReply(requestId, opcode,
+                    new WireProtocol.Reply(WireProtocol.Status.FAILED, "Reply too large"), buffer);
+        }
+        return new DatagramPacket(buffer.array(), buffer.position(), clientAddress, clientPort);
+    }
+
+    private DatagramPacket handleTextRequest(byte[] data, InetAddress clientAddress, int clientPort) {
+        String receivedMessage = new String(data);
+
+        // Requests tagged "#<id> " by UDPClient get the same tag on the reply
+        String requestTag = "";
+        long requestId = 0;
+        if (receivedMessage.startsWith("#")) {
+            int space = receivedMessage.indexOf(' ');
+            requestTag = space < 0 ? receivedMessage + " " : receivedMessage.substring(0, space + 1);
+            receivedMessage = space < 0 ? "" : receivedMessage.substring(space + 1);
+            try {
+                requestId = Long.parseLong(requestTag.substring(1).trim());
+            } catch (NumberFormatException e) {
+                requestId = 0; // tag is only echoed back
+            }
+        }
+
+        WireProtocol.Request request = WireProtocol.Request.fromText(receivedMessage);
+        String responseMessage = request == null
+                ? "INVALID_REQUEST"
+                : processOnce(requestId, request).toText(request.getOpcode());
+        byte[] responseBytes = (requestTag + responseMessage).getBytes();
+        return new DatagramPacket(responseBytes, responseBytes.length, clientAddress, clientPort);
+    }
+
+    public int getQueueDepth() {
+        return requestQueue.size();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public long getProcessedRequests() {
+        return processedRequests.get();
+    }
+
+    public long getBackpressureEvents() {
+        return backpressureEvents.get();
+    }
+
+    public String getStats() {
+        return "UDP server " + udpPort + ": workers=" + workers.getCorePoolSize() + ", active=" + workers.getActiveCount() +
+                ", queueDepth=" + getQueueDepth() + ", maxQueueDepth=" + getMaxQueueDepth() +
+                ", processed=" + getProcessedRequests() + ", backpressure=" + getBackpressureEvents() +
+                "; " + replies.getStats();
+    }
+
+    // Mutating requests run once per request ID; untagged legacy requests (ID 0) always run
+    private WireProtocol.Reply processOnce(long requestId, WireProtocol.Request request) {
+        if (requestId == 0 || !request.getOpcode().isMutating()) {
+            return processUDPRequest(request);
         }
+        return replies.execute(requestId, () -> processUDPRequest(request));
     }
 
-    private String processUDPRequest(String request) {
-        String[] parts = request.split(" ");
-        String command = parts[0];
+    private WireProtocol.Reply processUDPRequest(WireProtocol.Request request) {
+        switch (request.getOpcode()) {
+            case LIST_AVAILABILITY:
+                return getLocalShareAvailability(request.getField(0), request.getField(1));
+
+            case CHECK_SWAP_AVAILABILITY:
+                return checkSwapAvailability(request.getField(0), request.getField(1), request.getCount());
 
-        switch (command) {
-            case "LIST_AVAILABILITY":
-                if (parts.length < 2) return "INVALID_REQUEST_FORMAT";
-                String shareType = parts[1];
-                return getLocalShareAvailability(shareType);
+            case EXECUTE_SWAP:
+                return executeSwap(request.getField(0), request.getField(1), request.getField(2),
+                        request.getField(3), request.getField(4), request.getCount());
 
-            case "CHECK_SWAP_AVAILABILITY":
-                if (parts.length < 4) return "INVALID_REQUEST_FORMAT";
-                String shareID = parts[1];
-                shareType = parts[2];
-                int requiredCount = Integer.parseInt(parts[3]);
-                return checkSwapAvailability(shareID, shareType, requiredCount);
+            case HEARTBEAT:
+                return new WireProtocol.Reply(WireProtocol.Status.OK, serverImpl.getCity());
 
-            case "EXECUTE_SWAP":
-                if (parts.length < 7) return "INVALID_REQUEST_FORMAT";
-                String buyerID = parts[1];
-                String oldShareID = parts[2];
-                String oldShareType = parts[3];
-                String newShareID = parts[4];
-                String newShareType = parts[5];
-                int shareCount = Integer.parseInt(parts[6]);
-                return executeSwap(buyerID, oldShareID, oldShareType, newShareID, newShareType, shareCount);
+            case RESERVE_SWAP:
+                return reserveSwap(request.getField(0), request.getField(1), request.getField(2), request.getCount());
+
+            case COMMIT_SWAP:
+                return commitSwap(request.getField(0));
+
+            case ABORT_SWAP:
+                return abortSwap(request.getField(0));
+
+            case SWAP_STATUS:
+                return swapStatus(request.getField(0));
 
             default:
-                return "INVALID_REQUEST";
+                return new WireProtocol.Reply(WireProtocol.Status.INVALID_REQUEST, "INVALID_REQUEST");
         }
     }
 
-    private String getLocalShareAvailability(String shareType) {
+    // Returns one page of the listing, starting after the share ID given as continuation
+    private WireProtocol.Reply getLocalShareAvailability(String shareType, String continuation) {
         StringBuilder result = new StringBuilder();
-        synchronized (shareDatabase) {
-            if (shareDatabase.containsKey(shareType)) {
-                for (Share share : shareDatabase.get(shareType).values()) {
-                    result.append("Share: ").append(share.getShareID())
-                            .append(", Type: ").append(share.getShareType())
-                            .append(", Available: ").append(share.getAvailableCapacity())
-                            .append("\n");
-                }
+        ConcurrentNavigableMap<String, Share> shares = shareDatabase.get(shareType);
+        if (shares == null) {
+            return new WireProtocol.Reply(WireProtocol.Status.OK, "");
+        }
+        if (!continuation.isEmpty()) {
+            shares = shares.tailMap(continuation, false);
+        }
+
+        int pageBytes = 0;
+        String lastShareID = null;
+        for (Share share : shares.values()) {
+            int rowStart = result.length();
+            WireProtocol.appendAvailabilityRow(result, share.getShareID(), share.getAvailableCapacity());
+            int rowBytes = WireProtocol.utf8Length(result.subSequence(rowStart, result.length()));
+            if (lastShareID != null && pageBytes + rowBytes > PAGE_BUDGET) {
+                // Page is full, the requester continues after the last row sent
+                result.setLength(rowStart);
+                return new WireProtocol.Reply(WireProtocol.Status.OK, result.toString().trim(), lastShareID);
             }
+            pageBytes += rowBytes;
+            lastShareID = share.getShareID();
         }
-        return result.toString().trim();
+        return new WireProtocol.Reply(WireProtocol.Status.OK, result.toString().trim());
     }
 
-    private String checkSwapAvailability(String shareID, String shareType, int requiredCount) {
-        synchronized (shareDatabase) {
-            if (!shareDatabase.containsKey(shareType) ||
-                    !shareDatabase.get(shareType).containsKey(shareID)) {
-                return "NOT_AVAILABLE:Share not found";
-            }
+    private WireProtocol.Reply checkSwapAvailability(String shareID, String shareType, int requiredCount) {
+        if (!shareDatabase.containsKey(shareType) ||
+                !shareDatabase.get(shareType).containsKey(shareID)) {
+            return new WireProtocol.Reply(WireProtocol.Status.NOT_AVAILABLE, "Share not found");
+        }
 
-            Share share = shareDatabase.get(shareType).get(shareID);
-            if (share.getAvailableCapacity() < requiredCount) {
-                return "NOT_AVAILABLE:Not enough shares available. Required: " + requiredCount +
-                        ", Available: " + share.getAvailableCapacity();
+        Share share = shareDatabase.get(shareType).get(shareID);
+        int available = share.getAvailableCapacity();
+        if (available < requiredCount) {
+            return new WireProtocol.Reply(WireProtocol.Status.NOT_AVAILABLE,
+                    "Not enough shares available. Required: " + requiredCount + ", Available: " + available);
+        }
+
+        return new WireProtocol.Reply(WireProtocol.Status.OK, "Share available for swap");
+    }
+
+    // First phase of a two-phase swap: set the capacity aside and hand out the hold ID
+    private WireProtocol.Reply reserveSwap(String buyerID, String shareID, String shareType, int shareCount) {
+        long holdId = serverImpl.reserveSwap(buyerID, shareType, shareID, shareCount);
+        if (holdId < 0) {
+            return new WireProtocol.Reply(WireProtocol.Status.NOT_AVAILABLE, "Not enough new shares available");
+        }
+        return new WireProtocol.Reply(WireProtocol.Status.OK, Long.toString(holdId));
+    }
+
+    private WireProtocol.Reply commitSwap(String holdId) {
+        SwapReservations.Hold hold;
+        try {
+            hold = serverImpl.commitSwap(Long.parseLong(holdId));
+        } catch (NumberFormatException e) {
+            return new WireProtocol.Reply(WireProtocol.Status.INVALID_REQUEST, "INVALID_REQUEST");
+        }
+        if (hold == null) {
+            // A resend that outlived the dedup cache still gets the first answer
+            if (serverImpl.getSwapOutcome(Long.parseLong(holdId)) == SwapReservations.Outcome.COMMITTED) {
+                return new WireProtocol.Reply(WireProtocol.Status.OK, "Already committed");
             }
+            return new WireProtocol.Reply(WireProtocol.Status.FAILED, "Reservation expired or unknown");
+        }
+        return new WireProtocol.Reply(WireProtocol.Status.OK, Integer.toString(hold.count));
+    }
+
+    // Aborting a hold that already expired is fine, the capacity is back either way
+    private WireProtocol.Reply abortSwap(String holdId) {
+        try {
+            serverImpl.abortSwap(Long.parseLong(holdId));
+        } catch (NumberFormatException e) {
+            return new WireProtocol.Reply(WireProtocol.Status.INVALID_REQUEST, "INVALID_REQUEST");
+        }
+        return new WireProtocol.Reply(WireProtocol.Status.OK, "Reservation released");
+    }
 
-            return "AVAILABLE:Share available for swap";
+    private WireProtocol.Reply swapStatus(String holdId) {
+        try {
+            return new WireProtocol.Reply(WireProtocol.Status.OK,
+                    serverImpl.getSwapOutcome(Long.parseLong(holdId)).name());
+        } catch (NumberFormatException e) {
+            return new WireProtocol.Reply(WireProtocol.Status.INVALID_REQUEST, "INVALID_REQUEST");
         }
     }
 
-    private String executeSwap(String buyerID, String oldShareID, String oldShareType,
+    private WireProtocol.Reply executeSwap(String buyerID, String oldShareID, String oldShareType,
                                String newShareID, String newShareType, int shareCount) {
-        synchronized (shareDatabase) {
-            try {
-                // Double-check availability
-                if (!shareDatabase.containsKey(newShareType) ||
-                        !shareDatabase.get(newShareType).containsKey(newShareID)) {
-                    return "FAILED:New share not found";
-                }
-
-                Share newShare = shareDatabase.get(newShareType).get(newShareID);
-                if (newShare.getAvailableCapacity() < shareCount) {
-                    return "FAILED:Not enough new shares available";
-                }
-
-                // Reduce capacity of new share
-                newShare.reduceCapacity(shareCount);
-
-                // Add share to buyer's holdings
-                serverImpl.getShareDatabase().get(newShareType).get(newShareID).addBuyer(buyerID);
-
-                // Add to buyer holdings
-                Map<String, Integer> buyerHoldings = serverImpl.getBuyerHoldings().get(buyerID);
-                if (buyerHoldings == null) {
-                    buyerHoldings = new HashMap<>();
-                    serverImpl.getBuyerHoldings().put(buyerID, buyerHoldings);
-                }
-
-                String uniqueNewKey = newShareType + "-" + newShareID;
-                buyerHoldings.put(uniqueNewKey, buyerHoldings.getOrDefault(uniqueNewKey, 0) + shareCount);
-
-                System.out.println("Swap executed: Buyer " + buyerID + " acquired " + shareCount +
-                        " shares of " + uniqueNewKey);
-
-                return "SUCCESS:Swapped " + shareCount + " shares of " + newShareType + "-" + newShareID;
-            } catch (Exception e) {
-                System.err.println("Error executing swap: " + e.getMessage());
-                e.printStackTrace();
-                return "FAILED:Internal server error";
+        try {
+            // Double-check availability
+            if (!shareDatabase.containsKey(newShareType) ||
+                    !shareDatabase.get(newShareType).containsKey(newShareID)) {
+                return new WireProtocol.Reply(WireProtocol.Status.FAILED, "New share not found");
+            }
+
+            // Claim capacity of new share atomically and credit it to the buyer
+            if (!serverImpl.creditSwappedShares(buyerID, newShareType, newShareID, shareCount)) {
+                return new WireProtocol.Reply(WireProtocol.Status.FAILED, "New shares not available or not journaled");
             }
+            return new WireProtocol.Reply(WireProtocol.Status.OK,
+                    "Swapped " + shareCount + " shares of " + newShareType + "-" + newShareID);
+        } catch (Exception e) {
+            System.err.println("Error executing swap: " + e.getMessage());
+            e.printStackTrace();
+            return new WireProtocol.Reply(WireProtocol.Status.FAILED, "Internal server error");
         }
     }
-}
\ No newline at end of file
+}
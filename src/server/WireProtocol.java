@@ -0,0 +1,477 @@
+package server;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Inter-market UDP protocol. Requests and replies are framed in a compact,
+ * versioned binary format by default:
+ *
+ *   magic(1) version(1) opcode(1) status(1) requestId(8)
+ *   request: fieldCount(1) { length(2) utf8 }* count(4)
+ *   reply:   length(4) utf8 body, length(2) utf8 continuation token
+ *
+ * LIST_AVAILABILITY is paged: the request carries the continuation token of
+ * the previous page (empty for the first), and a reply with a non-empty
+ * token means more rows follow. In text mode the token travels as a final
+ * "NEXT:&lt;token&gt;" line of the reply. Each row of a page is one
+ * "shareID available" line of the requested share type.
+ *
+ * Cross-market swaps run in two phases: RESERVE_SWAP sets capacity aside on
+ * the target market and answers with a hold ID, which the requester then
+ * passes to COMMIT_SWAP or ABORT_SWAP; COMMIT_SWAP answers with the number
+ * of shares credited. Holds nobody resolves expire on the target after a TTL.
+ * SWAP_STATUS asks the target what became of a hold whose COMMIT_SWAP got
+ * no reply and answers OPEN, COMMITTED, NOT_COMMITTED or UNKNOWN; the
+ * target journals its commits, so the answer survives a restart.
+ * CHECK_SWAP_AVAILABILITY and EXECUTE_SWAP are kept for older senders. HEARTBEAT carries the sender's city and is answered with
+ * the receiver's ("SUCCESS:&lt;city&gt;" in text mode); markets use it to
+ * detect each other's failures.
+ *
+ * The requestId (or the "#&lt;id&gt;" tag in text mode) doubles as an
+ * idempotency key: a receiver answers a resent mutating request with the
+ * reply of the first copy instead of applying it again.
+ *
+ * The original space-delimited text protocol ("EXECUTE_SWAP b o t n t 5",
+ * replies like "SUCCESS:...") is still understood by every receiver and is
+ * used for sending when the system property dsms.udp.protocol=text is set.
+ * Receivers always answer in the encoding the request arrived in.
+ */
+public final class WireProtocol {
+    public static final byte MAGIC = (byte) 0xD5;
+    public static final byte VERSION = 2;
+    public static final String PROTOCOL_PROPERTY = "dsms.udp.protocol";
+
+    private static final int MAX_FIELDS = 8;
+    // magic, version, opcode, status and request ID
+    private static final int HEADER_SIZE = 12;
+    private static final int MAX_FIELD_BYTES = 0xFFFF;
+    private static final String NEXT_PREFIX = "NEXT:";
+
+    // Largest datagram either side sends or expects; stays below common OS limits
+    public static final int MAX_DATAGRAM_SIZE = 8192;
+
+    private static final ThreadLocal<CharsetEncoder> ENCODERS =
+            ThreadLocal.withInitial(StandardCharsets.UTF_8::newEncoder);
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[4096]);
+
+    private WireProtocol() {
+    }
+
+    public static boolean useBinary() {
+        return !"text".equalsIgnoreCase(System.getProperty(PROTOCOL_PROPERTY, "binary"));
+    }
+
+    public static boolean isBinary(ByteBuffer buffer) {
+        return buffer.remaining() > 0 && buffer.get(buffer.position()) == MAGIC;
+    }
+
+    public enum Opcode {
+        LIST_AVAILABILITY(1, 2, false),
+        CHECK_SWAP_AVAILABILITY(2, 2, false),
+        EXECUTE_SWAP(3, 5, true),
+        RESERVE_SWAP(4, 3, true),
+        COMMIT_SWAP(5, 1, true),
+        ABORT_SWAP(6, 1, true),
+        HEARTBEAT(7, 1, false),
+        SWAP_STATUS(8, 1, false);
+
+        private final byte code;
+        private final int fieldCount;
+        private final boolean mutating;
+
+        Opcode(int code, int fieldCount, boolean mutating) {
+            this.code = (byte) code;
+            this.fieldCount = fieldCount;
+            this.mutating = mutating;
+        }
+
+        public int getFieldCount() {
+            return fieldCount;
+        }
+
+        // Mutating requests are deduplicated by request ID on the receiver
+        public boolean isMutating() {
+            return mutating;
+        }
+
+        static Opcode fromCode(byte code) {
+            for (Opcode opcode : values()) {
+                if (opcode.code == code) {
+                    return opcode;
+                }
+            }
+            return null;
+        }
+    }
+
+    public enum Status {
+        OK(0), NOT_AVAILABLE(1), FAILED(2), INVALID_REQUEST(3);
+
+        private final byte code;
+
+        Status(int code) {
+            this.code = (byte) code;
+        }
+
+        static Status fromCode(byte code) {
+            for (Status status : values()) {
+                if (status.code == code) {
+                    return status;
+                }
+            }
+            return INVALID_REQUEST;
+        }
+    }
+
+    // A request: opcode, its string fields in protocol order, and a share count
+    public static final class Request {
+        private Opcode opcode;
+        private long requestId;
+        private final String[] fields = new String[MAX_FIELDS];
+        private int fieldCount;
+        private int count;
+
+        public static Request listAvailability(String shareType, String continuation) {
+            return new Request().set(Opcode.LIST_AVAILABILITY, 0, shareType, continuation);
+        }
+
+        public static Request checkSwapAvailability(String shareID, String shareType, int count) {
+            return new Request().set(Opcode.CHECK_SWAP_AVAILABILITY, count, shareID, shareType);
+        }
+
+        public static Request executeSwap(String buyerID, String oldShareID, String oldShareType,
+                                          String newShareID, String newShareType, int count) {
+            return new Request().set(Opcode.EXECUTE_SWAP, count, buyerID, oldShareID, oldShareType,
+                    newShareID, newShareType);
+        }
+
+        public static Request heartbeat(String senderCity) {
+            return new Request().set(Opcode.HEARTBEAT, 0, senderCity);
+        }
+
+        public static Request reserveSwap(String buyerID, String shareID, String shareType, int count) {
+            return new Request().set(Opcode.RESERVE_SWAP, count, buyerID, shareID, shareType);
+        }
+
+        public static Request commitSwap(long holdId) {
+            return new Request().set(Opcode.COMMIT_SWAP, 0, Long.toString(holdId));
+        }
+
+        public static Request abortSwap(long holdId) {
+            return new Request().set(Opcode.ABORT_SWAP, 0, Long.toString(holdId));
+        }
+
+        public static Request swapStatus(long holdId) {
+            return new Request().set(Opcode.SWAP_STATUS, 0, Long.toString(holdId));
+        }
+
+        private Request set(Opcode opcode, int count, String... values) {
+            this.opcode = opcode;
+            this.count = count;
+            this.fieldCount = values.length;
+            System.arraycopy(values, 0, fields, 0, values.length);
+            return this;
+        }
+
+        public Opcode getOpcode() {
+            return opcode;
+        }
+
+        public long getRequestId() {
+            return requestId;
+        }
+
+        public void setRequestId(long requestId) {
+            this.requestId = requestId;
+        }
+
+        public String getField(int index) {
+            return fields[index];
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        // Legacy text form, e.g. "CHECK_SWAP_AVAILABILITY NYKM100325 Equity 5"
+        public String toText() {
+            StringBuilder text = new StringBuilder(opcode.name());
+            for (int i = 0; i < fieldCount; i++) {
+                text.append(' ').append(fields[i]);
+            }
+            if (opcode != Opcode.LIST_AVAILABILITY) {
+                text.append(' ').append(count);
+            }
+            return text.toString();
+        }
+
+        /**
+         * Parses the legacy text form. Returns null if the command is unknown
+         * or the field count does not match.
+         */
+        public static Request fromText(String text) {
+            String[] parts = text.split(" ");
+            Opcode opcode;
+            try {
+                opcode = Opcode.valueOf(parts[0]);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            boolean hasCount = opcode != Opcode.LIST_AVAILABILITY;
+            // Unpaged LIST_AVAILABILITY requests from older senders have no token
+            int optional = hasCount ? 0 : 1;
+            if (parts.length < 1 + opcode.fieldCount - optional + (hasCount ? 1 : 0)) {
+                return null;
+            }
+            Request request = new Request();
+            request.opcode = opcode;
+            request.fieldCount = opcode.fieldCount;
+            System.arraycopy(parts, 1, request.fields, 0, Math.min(opcode.fieldCount, parts.length - 1));
+            for (int i = parts.length - 1; i < opcode.fieldCount; i++) {
+                request.fields[i] = "";
+            }
+            if (hasCount) {
+                try {
+                    request.count = Integer.parseInt(parts[1 + opcode.fieldCount]);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+            return request;
+        }
+    }
+
+    public static final class Reply {
+        private final Status status;
+        private final String body;
+        private final String continuation;
+
+        public Reply(Status status, String body) {
+            this(status, body, "");
+        }
+
+        public Reply(Status status, String body, String continuation) {
+            this.status = status;
+            this.body = body;
+            this.continuation = continuation;
+        }
+
+        // Token to request the next page with, empty when this is the last page
+        public String getContinuation() {
+            return continuation;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public boolean isOk() {
+            return status == Status.OK;
+        }
+
+        // Legacy text form of this reply to the given opcode
+        public String toText(Opcode opcode) {
+            switch (status) {
+                case OK:
+                    if (opcode == Opcode.CHECK_SWAP_AVAILABILITY) return "AVAILABLE:" + body;
+                    if (opcode == Opcode.RESERVE_SWAP) return "RESERVED:" + body;
+                    if (opcode == Opcode.EXECUTE_SWAP || opcode == Opcode.COMMIT_SWAP || opcode == Opcode.ABORT_SWAP
+                            || opcode == Opcode.SWAP_STATUS || opcode == Opcode.HEARTBEAT) return "SUCCESS:" + body;
+                    return continuation.isEmpty() ? body : body + "\n" + NEXT_PREFIX + continuation;
+                case NOT_AVAILABLE:
+                    return "NOT_AVAILABLE:" + body;
+                case FAILED:
+                    return "FAILED:" + body;
+                default:
+                    return body.isEmpty() ? "INVALID_REQUEST" : body;
+            }
+        }
+
+        public static Reply fromText(Opcode opcode, String text) {
+            if (text.startsWith("AVAILABLE:")) return new Reply(Status.OK, text.substring(10));
+            if (text.startsWith("RESERVED:")) return new Reply(Status.OK, text.substring(9));
+            if (text.startsWith("SUCCESS:")) return new Reply(Status.OK, text.substring(8));
+            if (text.startsWith("NOT_AVAILABLE:")) return new Reply(Status.NOT_AVAILABLE, text.substring(14));
+            if (text.startsWith("FAILED:")) return new Reply(Status.FAILED, text.substring(7));
+            if (text.startsWith("INVALID_REQUEST")) return new Reply(Status.INVALID_REQUEST, text);
+            if (opcode != Opcode.LIST_AVAILABILITY) {
+                return new Reply(Status.FAILED, text);
+            }
+            int last = text.lastIndexOf('\n') + 1;
+            if (text.startsWith(NEXT_PREFIX, last)) {
+                return new Reply(Status.OK, text.substring(0, Math.max(0, last - 1)), text.substring(last + NEXT_PREFIX.length()));
+            }
+            return new Reply(Status.OK, text);
+        }
+    }
+
+    public static void encodeRequest(Request request, ByteBuffer buffer) {
+        putHeader(buffer, request.opcode.code, (byte) 0, request.requestId);
+        buffer.put((byte) request.fieldCount);
+        for (int i = 0; i < request.fieldCount; i++) {
+            putString(buffer, request.fields[i], false);
+        }
+        buffer.putInt(request.count);
+    }
+
+    // Decodes a request at the buffer's position; null for unknown versions or opcodes and truncated datagrams
+    public static Request decodeRequest(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE + 1 || buffer.get() != MAGIC || buffer.get() != VERSION) {
+            return null;
+        }
+        Opcode opcode = Opcode.fromCode(buffer.get());
+        buffer.get(); // status, unused in requests
+        long requestId = buffer.getLong();
+        int fieldCount = buffer.get();
+        if (opcode == null || fieldCount != opcode.fieldCount) {
+            return null;
+        }
+        Request request = new Request();
+        request.opcode = opcode;
+        request.requestId = requestId;
+        request.fieldCount = fieldCount;
+        for (int i = 0; i < fieldCount; i++) {
+            if (buffer.remaining() < 2) {
+                return null;
+            }
+            request.fields[i] = getString(buffer, buffer.getShort() & 0xFFFF);
+            if (request.fields[i] == null) {
+                return null;
+            }
+        }
+        if (buffer.remaining() < 4) {
+            return null;
+        }
+        request.count = buffer.getInt();
+        return request;
+    }
+
+    public static void encodeReply(long requestId, Opcode opcode, Reply reply, ByteBuffer buffer) {
+        putHeader(buffer, opcode == null ? 0 : opcode.code, reply.status.code, requestId);
+        putString(buffer, reply.body, true);
+        putString(buffer, reply.continuation, false);
+    }
+
+    // Request ID of a binary datagram without decoding it; -1 if it is too short to carry one
+    public static long peekRequestId(ByteBuffer buffer) {
+        return buffer.remaining() < HEADER_SIZE ? -1 : buffer.getLong(buffer.position() + 4);
+    }
+
+    // Decodes a reply at the buffer's position; null for unknown versions, truncated datagrams or inconsistent lengths
+    public static Reply decodeReply(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE + 4 || buffer.get() != MAGIC || buffer.get() != VERSION) {
+            return null;
+        }
+        buffer.get(); // opcode
+        Status status = Status.fromCode(buffer.get());
+        buffer.getLong(); // request ID
+        String body = getString(buffer, buffer.getInt());
+        if (body == null || buffer.remaining() < 2) {
+            return null;
+        }
+        String continuation = getString(buffer, buffer.getShort() & 0xFFFF);
+        return continuation == null ? null : new Reply(status, body, continuation);
+    }
+
+    // Encoded size of a string without encoding it; exact for ASCII share IDs
+    public static int utf8Length(CharSequence value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            length += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+        return length;
+    }
+
+    // Receives one row of a LIST_AVAILABILITY reply body
+    public interface AvailabilityRow {
+        void accept(String shareID, int available);
+    }
+
+    public static void appendAvailabilityRow(StringBuilder body, String shareID, int available) {
+        body.append(shareID).append(' ').append(available).append('\n');
+    }
+
+    // Rows in the older "Share: X, Type: T, Available: N" form are read too
+    public static void forEachAvailabilityRow(String body, AvailabilityRow row) {
+        for (String line : body.split("\n")) {
+            String shareID;
+            String available;
+            if (line.startsWith("Share: ")) {
+                int typeAt = line.indexOf(", Type: ");
+                int availableAt = line.lastIndexOf(", Available: ");
+                if (typeAt < 0 || availableAt < 0) {
+                    continue;
+                }
+                shareID = line.substring(7, typeAt);
+                available = line.substring(availableAt + 13);
+            } else {
+                int space = line.lastIndexOf(' ');
+                if (space <= 0) {
+                    continue;
+                }
+                shareID = line.substring(0, space);
+                available = line.substring(space + 1);
+            }
+            try {
+                row.accept(shareID, Integer.parseInt(available.trim()));
+            } catch (NumberFormatException e) {
+                // Not a listing row
+            }
+        }
+    }
+
+    private static void putHeader(ByteBuffer buffer, byte opcode, byte status, long requestId) {
+        buffer.put(MAGIC).put(VERSION).put(opcode).put(status).putLong(requestId);
+    }
+
+    // Encodes straight into the buffer and back-patches the length prefix
+    private static void putString(ByteBuffer buffer, String value, boolean wideLength) {
+        int lengthPosition = buffer.position();
+        buffer.position(lengthPosition + (wideLength ? 4 : 2));
+        CharsetEncoder encoder = ENCODERS.get().reset();
+        CoderResult result = encoder.encode(CharBuffer.wrap(value), buffer, true);
+        if (result.isOverflow()) {
+            throw new BufferOverflowException();
+        }
+        encoder.flush(buffer);
+        int length = buffer.position() - lengthPosition - (wideLength ? 4 : 2);
+        if (wideLength) {
+            buffer.putInt(lengthPosition, length);
+        } else {
+            if (length > MAX_FIELD_BYTES) {
+                throw new IllegalArgumentException("Field too long: " + length + " bytes");
+            }
+            buffer.putShort(lengthPosition, (short) length);
+        }
+    }
+
+    // Null if the buffer holds fewer than length bytes
+    private static String getString(ByteBuffer buffer, int length) {
+        if (length < 0 || length > buffer.remaining()) {
+            return null;
+        }
+        if (buffer.hasArray()) {
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+        byte[] scratch = SCRATCH.get();
+        if (scratch.length < length) {
+            scratch = new byte[length];
+            SCRATCH.set(scratch);
+        }
+        buffer.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+}
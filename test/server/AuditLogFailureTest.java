@@ -0,0 +1,55 @@
+package server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Points an audit log at a file that cannot be created and checks that
+ * logging many times the ring capacity, plus durable records, neither
+ * blocks nor waits out the durable timeout.
+ */
+public class AuditLogFailureTest {
+
+    public static void main(String[] args) throws IOException {
+        File parent = File.createTempFile("audit", ".notadir");
+        parent.deleteOnExit();
+        AuditLog log = new AuditLog(new File(parent, "NewYork_Server.log"), 16);
+
+        // Rejected records go to stderr; count the lines instead of printing them
+        PrintStream err = System.err;
+        AtomicLong lines = new AtomicLong();
+        System.setErr(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                if (b == '\n') {
+                    lines.incrementAndGet();
+                }
+            }
+        }, true));
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < 100_000; i++) {
+                log.log("Purchase Share", "BuyerID: NYKB" + i, true);
+            }
+            for (int i = 0; i < 10; i++) {
+                log.logDurable("Swap Shares", "BuyerID: NYKB" + i, true);
+            }
+        } finally {
+            System.setErr(err);
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println(log.getStats() + ", stderr lines=" + lines.get() + ", took " + elapsedMs + " ms");
+        if (!log.getStats().contains("FAILED") || lines.get() < 100_010) {
+            throw new IllegalStateException("FAILED: records were not reported on stderr");
+        }
+        // Ten durable records waiting out their 5 s timeout would take 50 s
+        if (elapsedMs > 5_000) {
+            throw new IllegalStateException("FAILED: logging to a broken file blocked for " + elapsedMs + " ms");
+        }
+        System.out.println("AuditLogFailureTest: OK");
+    }
+}
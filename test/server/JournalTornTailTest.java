@@ -0,0 +1,65 @@
+package server;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recovers a journal whose only segment starts with a torn record, appends
+ * to it and recovers again: the records written after the first recovery
+ * must come back.
+ */
+public class JournalTornTailTest {
+
+    // Collects replayed records, holds no state of its own
+    private static final class Recorder implements InventoryJournal.Target {
+        final List<InventoryJournal.Entry> replayed = new ArrayList<>();
+
+        @Override
+        public InventoryJournal.State captureState() {
+            return new InventoryJournal.State();
+        }
+
+        @Override
+        public void restoreState(InventoryJournal.State state) {
+        }
+
+        @Override
+        public void replay(InventoryJournal.Entry entry) {
+            replayed.add(entry);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("journal").toFile();
+        // A crash while writing the first record: a header promising 50 bytes, then 3
+        try (FileOutputStream out = new FileOutputStream(new File(dir, String.format("wal-%020d.log", 0)))) {
+            out.write(new byte[]{0, 0, 0, 50, 1, 2, 3, 4, 9, 9, 9});
+        }
+
+        Recorder first = new Recorder();
+        InventoryJournal journal = new InventoryJournal(dir, InventoryJournal.FsyncPolicy.SYNC, first);
+        journal.open();
+        check(first.replayed.isEmpty(), "torn record was replayed");
+        for (int i = 0; i < 3; i++) {
+            journal.await(journal.append(new InventoryJournal.Entry(InventoryJournal.Type.PURCHASE,
+                    "NYKB1111", "Equity", "NYKM10032" + i, 5)));
+        }
+
+        Recorder second = new Recorder();
+        new InventoryJournal(dir, InventoryJournal.FsyncPolicy.SYNC, second).open();
+        System.out.println("Records replayed after the second recovery: " + second.replayed.size());
+        check(second.replayed.size() == 3, "records appended after a torn tail were lost");
+        check(second.replayed.get(2).getShareID().equals("NYKM100322"), "wrong record order");
+        System.out.println("JournalTornTailTest: OK");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException("FAILED: " + message);
+        }
+    }
+}
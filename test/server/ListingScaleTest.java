@@ -0,0 +1,77 @@
+package server;
+
+import ShareMarket.Availability;
+import ShareMarket.ListingStatus;
+import ShareMarket.MarketAvailability;
+
+import java.util.concurrent.ConcurrentNavigableMap;
+
+/**
+ * Lists a London market holding ROWS Equity shares from New York over the
+ * paged LIST_AVAILABILITY exchange and checks the listing is complete:
+ * every share exactly once, in order, with its capacity. Needs a heap of
+ * about 1 GB (-Xmx1g); an optional argument overrides the row count.
+ */
+public class ListingScaleTest {
+    private static final int NEW_YORK_PORT = 6400;
+    private static final int LONDON_PORT = 6401;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.setProperty("dsms.audit", "off");
+        System.setProperty("dsms.heartbeat", "off");
+        System.setProperty("dsms.wal", "off");
+        System.setProperty("dsms.list.maxRows", Integer.toString(count + 1));
+        System.setProperty("dsms.list.deadlineMs", "120000");
+        ShareMarketServerImpl newYork = new ShareMarketServerImpl("NewYork", NEW_YORK_PORT);
+        ShareMarketServerImpl london = new ShareMarketServerImpl("London", LONDON_PORT);
+        UDPServerThread londonUdp = new UDPServerThread(LONDON_PORT, london, london.getShareDatabase());
+        londonUdp.setDaemon(true);
+        londonUdp.start();
+        newYork.addRemoteServer("London", LONDON_PORT);
+
+        // Straight into the share database: the listing reads it directly, and a million addShare calls would be slow
+        ConcurrentNavigableMap<String, Share> equity = london.getShareDatabase().get("Equity");
+        for (int i = 0; i < count; i++) {
+            String shareID = shareID(i);
+            equity.put(shareID, new Share(shareID, "Equity", i % 1000));
+        }
+        Thread.sleep(200);
+
+        long before = londonUdp.getProcessedRequests();
+        long start = System.nanoTime();
+        MarketAvailability[] report = newYork.listShareAvailability("Equity");
+        long tookMs = (System.nanoTime() - start) / 1_000_000;
+        long pages = londonUdp.getProcessedRequests() - before;
+
+        MarketAvailability remote = null;
+        for (MarketAvailability market : report) {
+            if (market.market.equals("London")) {
+                remote = market;
+            }
+        }
+        check(remote != null, "London is missing from the report");
+        System.out.println("Listed " + remote.shares.length + " of " + count + " rows in " + pages + " pages, " +
+                tookMs + " ms, status " + remote.status.value());
+        check(remote.status.value() == ListingStatus._COMPLETE, "listing is not complete");
+        check(remote.shares.length == count, "expected " + count + " rows, got " + remote.shares.length);
+        // Share IDs are zero-padded, so database order is index order
+        for (int i = 0; i < count; i++) {
+            Availability row = remote.shares[i];
+            check(row.shareID.equals(shareID(i)) && row.available == i % 1000, "row " + i + " is " + row.shareID +
+                    " " + row.available);
+        }
+        System.out.println("ListingScaleTest: OK");
+        System.exit(0);
+    }
+
+    private static String shareID(int index) {
+        return String.format("LONM010325%07d", index);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException("FAILED: " + message);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package server;
+
+import ShareMarket.ListingStatus;
+import ShareMarket.MarketAvailability;
+import ShareMarket.Result;
+import ShareMarket.ResultCode;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+/**
+ * Runs New York and London in this JVM and Tokyo in a child JVM, then kills
+ * Tokyo. Checks that the heartbeats notice, that New York's listings keep
+ * the latency they had with all three markets up instead of waiting on the
+ * dead one, that a swap into Tokyo fails fast, and that a restarted Tokyo
+ * is picked up again without a client request having to probe it.
+ */
+public class MarketFailoverTest {
+    private static final int NEW_YORK_PORT = 6500;
+    private static final int LONDON_PORT = 6501;
+    private static final int TOKYO_PORT = 6502;
+    private static final int CALLS = 50;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("dsms.audit", "off");
+        System.setProperty("dsms.wal", "off");
+        System.setProperty("dsms.heartbeat.intervalMs", "100");
+        if (args.length > 0 && args[0].equals("tokyo")) {
+            runTokyo();
+            return;
+        }
+
+        ShareMarketServerImpl newYork = startMarket("NewYork", NEW_YORK_PORT);
+        ShareMarketServerImpl london = startMarket("London", LONDON_PORT);
+        newYork.addShare("NYKM010325", "Equity", 100);
+        newYork.purchaseShare("NYKB0001", "NYKM010325", "Equity", 1);
+        london.addShare("LONM010325", "Equity", 100);
+        Process tokyo = startTokyo();
+        waitFor(newYork, "Tokyo", ListingStatus._COMPLETE, 10_000);
+
+        long[] allUp = timeListings(newYork);
+        tokyo.destroyForcibly().waitFor();
+        long killed = System.nanoTime();
+        long detectedMs = waitFor(newYork, "Tokyo", ListingStatus._UNAVAILABLE, 10_000);
+        long[] tokyoDown = timeListings(newYork);
+
+        long start = System.nanoTime();
+        Result swap = newYork.swapShares("NYKB0001", "NYKM010325", "Equity", "TOKM010325", "Equity");
+        long swapMs = (System.nanoTime() - start) / 1_000_000;
+
+        Process restarted = startTokyo();
+        long recoveredMs = waitFor(newYork, "Tokyo", ListingStatus._COMPLETE, 15_000);
+        restarted.destroyForcibly().waitFor();
+
+        System.out.printf("listings, all up:     p50 %6.2f ms, p99 %6.2f ms, max %6.2f ms%n",
+                millis(allUp, 0.5), millis(allUp, 0.99), millis(allUp, 1.0));
+        System.out.printf("listings, Tokyo dead: p50 %6.2f ms, p99 %6.2f ms, max %6.2f ms%n",
+                millis(tokyoDown, 0.5), millis(tokyoDown, 0.99), millis(tokyoDown, 1.0));
+        System.out.println("Tokyo reported unavailable " + detectedMs + " ms after the kill (" +
+                (System.nanoTime() - killed) / 1_000_000 + " ms ago), swap into it failed in " + swapMs +
+                " ms, restarted Tokyo listed again after " + recoveredMs + " ms");
+        check(swap.code.value() == ResultCode._MARKET_UNAVAILABLE, "swap into the dead market got " + swap.code.value());
+        check(swapMs < 100, "swap into the dead market did not fail fast");
+        // Flat: a dead market may not add anything near a timeout to a listing
+        check(millis(tokyoDown, 0.99) < millis(allUp, 0.99) + 100, "listings slowed down after Tokyo died");
+        System.out.println("MarketFailoverTest: OK");
+        System.exit(0);
+    }
+
+    private static ShareMarketServerImpl startMarket(String city, int port) {
+        ShareMarketServerImpl market = new ShareMarketServerImpl(city, port);
+        UDPServerThread udp = new UDPServerThread(port, market, market.getShareDatabase());
+        udp.setDaemon(true);
+        udp.start();
+        if (port != NEW_YORK_PORT) {
+            market.addRemoteServer("NewYork", NEW_YORK_PORT);
+        }
+        if (port != LONDON_PORT) {
+            market.addRemoteServer("London", LONDON_PORT);
+        }
+        if (port != TOKYO_PORT) {
+            market.addRemoteServer("Tokyo", TOKYO_PORT);
+        }
+        return market;
+    }
+
+    // Child JVM: Tokyo runs until it is killed
+    private static void runTokyo() throws InterruptedException {
+        ShareMarketServerImpl tokyo = startMarket("Tokyo", TOKYO_PORT);
+        tokyo.addShare("TOKM010325", "Equity", 100);
+        System.out.println("READY");
+        Thread.sleep(Long.MAX_VALUE);
+    }
+
+    private static Process startTokyo() throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                MarketFailoverTest.class.getName(), "tokyo").redirectErrorStream(true).start();
+        BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        String line;
+        while ((line = out.readLine()) != null && !line.equals("READY")) {
+            // Startup output
+        }
+        check(line != null, "Tokyo did not start");
+        return process;
+    }
+
+    // Lists until the market has the given status; returns how long that took
+    private static long waitFor(ShareMarketServerImpl from, String market, int status, long timeoutMs)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < timeoutMs * 1_000_000) {
+            for (MarketAvailability listed : from.listShareAvailability("Equity")) {
+                if (listed.market.equals(market) && listed.status.value() == status) {
+                    return (System.nanoTime() - start) / 1_000_000;
+                }
+            }
+            Thread.sleep(50);
+        }
+        throw new IllegalStateException("FAILED: " + market + " never reached listing status " + status);
+    }
+
+    private static long[] timeListings(ShareMarketServerImpl market) {
+        long[] took = new long[CALLS];
+        for (int i = 0; i < CALLS; i++) {
+            long start = System.nanoTime();
+            market.listShareAvailability("Equity");
+            took[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(took);
+        return took;
+    }
+
+    private static double millis(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, sorted.length * percentile)] / 1e6;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException("FAILED: " + message);
+        }
+    }
+}
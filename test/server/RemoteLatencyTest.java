@@ -0,0 +1,165 @@
+package server;
+
+import ShareMarket.MarketAvailability;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Injects latency into every reply from London and checks that local New
+ * York purchases are not slowed down while other requests wait on London:
+ * remote calls must not be made while holding anything a local purchase
+ * needs. Also has both markets list each other at the same time, which
+ * must not deadlock.
+ */
+public class RemoteLatencyTest {
+    private static final int NEW_YORK_PORT = 6300;
+    private static final int LONDON_PORT = 6301;
+    private static final int LONDON_PROXY_PORT = 6311;
+    private static final long INJECTED_MS = 400;
+    private static final int REMOTE_CALLERS = 16;
+    private static final int PURCHASES = 1500;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("dsms.audit", "off");
+        System.setProperty("dsms.heartbeat", "off");
+        System.setProperty("dsms.wal", "off");
+        ShareMarketServerImpl newYork = new ShareMarketServerImpl("NewYork", NEW_YORK_PORT);
+        ShareMarketServerImpl london = new ShareMarketServerImpl("London", LONDON_PORT);
+        startUdp(newYork, NEW_YORK_PORT);
+        startUdp(london, LONDON_PORT);
+        startDelayingProxy(LONDON_PROXY_PORT, LONDON_PORT, INJECTED_MS);
+        newYork.addRemoteServer("London", LONDON_PROXY_PORT);
+        london.addRemoteServer("NewYork", NEW_YORK_PORT);
+        Thread.sleep(200);
+
+        newYork.addShare("NYKM010325", "Equity", 1_000_000);
+        london.addShare("LONM010325", "Equity", 1_000_000);
+        for (int b = 0; b < REMOTE_CALLERS; b++) {
+            newYork.purchaseShare(buyer(b), "NYKM010325", "Equity", 1);
+        }
+
+        long[] quiet = timePurchases(newYork, "NYKB9000");
+
+        // Keep New York busy with swaps and listings that each wait on the slow London
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger remoteCalls = new AtomicInteger();
+        Thread[] callers = new Thread[REMOTE_CALLERS];
+        for (int c = 0; c < REMOTE_CALLERS; c++) {
+            String buyerID = buyer(c);
+            boolean swapper = c % 2 == 0;
+            callers[c] = new Thread(() -> {
+                while (running.get()) {
+                    if (swapper) {
+                        // Swaps back and forth, so the buyer always holds one of the two
+                        newYork.swapShares(buyerID, "NYKM010325", "Equity", "LONM010325", "Equity");
+                        london.swapShares(buyerID, "LONM010325", "Equity", "NYKM010325", "Equity");
+                    } else {
+                        newYork.listShareAvailability("Equity");
+                    }
+                    remoteCalls.incrementAndGet();
+                }
+            });
+            callers[c].start();
+        }
+        Thread.sleep(INJECTED_MS * 2);
+        long[] loaded = timePurchases(newYork, "NYKB9001");
+        running.set(false);
+        for (Thread caller : callers) {
+            caller.join();
+        }
+
+        System.out.printf("local purchases, quiet:             p50 %6.2f ms, p99 %6.2f ms, max %7.2f ms%n",
+                millis(quiet, 0.5), millis(quiet, 0.99), millis(quiet, 1.0));
+        System.out.printf("local purchases, London +%d ms:    p50 %6.2f ms, p99 %6.2f ms, max %7.2f ms (%d remote calls)%n",
+                INJECTED_MS, millis(loaded, 0.5), millis(loaded, 0.99), millis(loaded, 1.0), remoteCalls.get());
+        check(remoteCalls.get() > 0, "no remote call completed");
+        check(millis(loaded, 0.99) < INJECTED_MS / 4.0, "local purchases waited on the slow market");
+
+        // Each market lists the other at the same moment
+        long start = System.nanoTime();
+        Thread other = new Thread(() -> london.listShareAvailability("Equity"));
+        other.start();
+        MarketAvailability[] listing = newYork.listShareAvailability("Equity");
+        other.join(10_000);
+        long tookMs = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("mutual listing took " + tookMs + " ms, " + listing.length + " markets");
+        check(!other.isAlive() && listing.length == 2, "markets listing each other did not both finish");
+
+        System.out.println("RemoteLatencyTest: OK");
+        System.exit(0);
+    }
+
+    // Paced a millisecond apart, so the purchases span several injected delays
+    private static long[] timePurchases(ShareMarketServerImpl market, String buyerID) throws InterruptedException {
+        long[] took = new long[PURCHASES];
+        for (int i = 0; i < PURCHASES; i++) {
+            long start = System.nanoTime();
+            check(Results.isSuccess(market.purchaseShare(buyerID, "NYKM010325", "Equity", 1)), "local purchase failed");
+            took[i] = System.nanoTime() - start;
+            Thread.sleep(1);
+        }
+        Arrays.sort(took);
+        return took;
+    }
+
+    private static double millis(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, sorted.length * percentile)] / 1e6;
+    }
+
+    private static void startUdp(ShareMarketServerImpl market, int port) {
+        UDPServerThread udp = new UDPServerThread(port, market, market.getShareDatabase());
+        udp.setDaemon(true);
+        udp.start();
+    }
+
+    // Forwards each datagram to the target and holds its reply back for delayMs
+    private static void startDelayingProxy(int port, int targetPort, long delayMs) throws Exception {
+        DatagramSocket proxy = new DatagramSocket(port);
+        Thread receiver = new Thread(() -> {
+            byte[] buffer = new byte[WireProtocol.MAX_DATAGRAM_SIZE];
+            while (true) {
+                try {
+                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    proxy.receive(packet);
+                    byte[] request = Arrays.copyOf(packet.getData(), packet.getLength());
+                    SocketAddress sender = packet.getSocketAddress();
+                    Thread forward = new Thread(() -> {
+                        try (DatagramSocket upstream = new DatagramSocket()) {
+                            upstream.send(new DatagramPacket(request, request.length,
+                                    new InetSocketAddress("localhost", targetPort)));
+                            byte[] reply = new byte[WireProtocol.MAX_DATAGRAM_SIZE];
+                            DatagramPacket answer = new DatagramPacket(reply, reply.length);
+                            upstream.receive(answer);
+                            Thread.sleep(delayMs);
+                            proxy.send(new DatagramPacket(answer.getData(), answer.getLength(), sender));
+                        } catch (Exception e) {
+                            // The sender times out and retries
+                        }
+                    });
+                    forward.setDaemon(true);
+                    forward.start();
+                } catch (Exception e) {
+                    return;
+                }
+            }
+        });
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    private static String buyer(int index) {
+        return String.format("NYKB%04d", index);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException("FAILED: " + message);
+        }
+    }
+}
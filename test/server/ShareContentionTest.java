@@ -0,0 +1,159 @@
+package server;
+
+import ShareMarket.Holding;
+import ShareMarket.Result;
+import ShareMarket.ResultCode;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Contention stress for share capacity. Many buyers hammer one popular
+ * share and must get exactly its capacity between them, never more; then
+ * purchases race removals of the share they buy, and the journal must never
+ * record a purchase of a share after its removal.
+ */
+public class ShareContentionTest {
+    private static final int THREADS = 32;
+    private static final int CAPACITY = 20_000;
+    private static final int REMOVAL_ROUNDS = 300;
+
+    public static void main(String[] args) throws Exception {
+        File walDir = Files.createTempDirectory("contention").toFile();
+        System.setProperty("dsms.audit", "off");
+        System.setProperty("dsms.heartbeat", "off");
+        System.setProperty("dsms.wal.dir", walDir.getPath());
+        ShareMarketServerImpl market = new ShareMarketServerImpl("NewYork", 0);
+
+        noOversell(market);
+        noPurchaseAfterRemoval(market);
+
+        // Replay the journal as the next start would and check the order of the records
+        List<InventoryJournal.Entry> records = new ArrayList<>();
+        new InventoryJournal(new File(walDir, "NewYork"), InventoryJournal.FsyncPolicy.ASYNC,
+                new InventoryJournal.Target() {
+                    @Override
+                    public InventoryJournal.State captureState() {
+                        return new InventoryJournal.State();
+                    }
+
+                    @Override
+                    public void restoreState(InventoryJournal.State state) {
+                    }
+
+                    @Override
+                    public void replay(InventoryJournal.Entry entry) {
+                        records.add(entry);
+                    }
+                }).open();
+        Set<String> removed = new HashSet<>();
+        int late = 0;
+        for (InventoryJournal.Entry entry : records) {
+            if (entry.getType() == InventoryJournal.Type.REMOVE_SHARE) {
+                removed.add(entry.getShareID());
+            } else if (entry.getType() == InventoryJournal.Type.PURCHASE && removed.contains(entry.getShareID())) {
+                late++;
+            }
+        }
+        System.out.println("Journal: " + records.size() + " records, purchases after removal: " + late);
+        check(late == 0, late + " purchases were journaled after the share was removed");
+        System.out.println("ShareContentionTest: OK");
+        System.exit(0);
+    }
+
+    // Every thread buys one unit at a time until the share is sold out
+    private static void noOversell(ShareMarketServerImpl market) throws InterruptedException {
+        check(Results.isSuccess(market.addShare("NYKM010325", "Equity", CAPACITY)), "could not add the share");
+        AtomicInteger sold = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> buyers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            String buyerID = String.format("NYKB%04d", t);
+            Thread buyer = new Thread(() -> {
+                await(start);
+                while (true) {
+                    Result result = market.purchaseShare(buyerID, "NYKM010325", "Equity", 1);
+                    if (!Results.isSuccess(result)) {
+                        check(result.code.value() == ResultCode._NOT_ENOUGH_AVAILABLE, "unexpected " + result.code.value());
+                        return;
+                    }
+                    sold.incrementAndGet();
+                }
+            });
+            buyer.start();
+            buyers.add(buyer);
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread buyer : buyers) {
+            buyer.join();
+        }
+        long elapsedMs = (System.nanoTime() - begin) / 1_000_000;
+
+        int held = 0;
+        for (int t = 0; t < THREADS; t++) {
+            for (Holding holding : market.getLocalHoldings(String.format("NYKB%04d", t)).holdings) {
+                held += holding.quantity;
+            }
+        }
+        int left = market.getShareDatabase().get("Equity").get("NYKM010325").getAvailableCapacity();
+        System.out.println(THREADS + " buyers on one share: sold " + sold.get() + " of " + CAPACITY + " in " +
+                elapsedMs + " ms, held " + held + ", left " + left);
+        check(sold.get() == CAPACITY && held == CAPACITY && left == 0, "capacity was oversold or lost");
+    }
+
+    // Buyers keep purchasing a share while it is removed under them
+    private static void noPurchaseAfterRemoval(ShareMarketServerImpl market) throws InterruptedException {
+        int notFound = 0;
+        for (int round = 0; round < REMOVAL_ROUNDS; round++) {
+            String shareID = String.format("NYKA%02d%02d%02d", 1 + round % 28, 1 + round / 28 % 12, 26 + round / 336);
+            market.addShare(shareID, "Bonus", 1_000_000);
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicInteger rejected = new AtomicInteger();
+            List<Thread> buyers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                String buyerID = String.format("NYKB%04d", 100 + t);
+                Thread buyer = new Thread(() -> {
+                    await(start);
+                    while (true) {
+                        Result result = market.purchaseShare(buyerID, shareID, "Bonus", 1);
+                        if (!Results.isSuccess(result)) {
+                            rejected.incrementAndGet();
+                            return;
+                        }
+                    }
+                });
+                buyer.start();
+                buyers.add(buyer);
+            }
+            start.countDown();
+            Thread.sleep(1);
+            market.removeShare(shareID, "Bonus");
+            for (Thread buyer : buyers) {
+                buyer.join();
+            }
+            notFound += rejected.get();
+        }
+        System.out.println(REMOVAL_ROUNDS + " removals under load, " + notFound + " purchases turned away");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException("FAILED: " + message);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package server;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Microbenchmark of claiming capacity on one popular share: the CAS loop
+ * of {@link Share#tryReserve(int)} against a check-then-act under the
+ * share's monitor, as purchases did before. Each thread claims and releases
+ * one unit in a loop; reports throughput and the 99th/99.9th percentile of
+ * a claim. Optional arguments: thread counts, e.g. "1 4 16 64".
+ */
+public class ShareReserveBenchmark {
+    private static final long WARMUP_MS = 500;
+    private static final long MEASURE_MS = 2000;
+    private static final int SAMPLES_PER_THREAD = 1 << 16;
+
+    // The claim being measured
+    private interface Claim {
+        boolean reserve(int count);
+
+        void release(int count);
+    }
+
+    // Check-then-act under a monitor, the pre-CAS way of taking capacity
+    private static final class MonitorShare implements Claim {
+        private int available;
+
+        MonitorShare(int available) {
+            this.available = available;
+        }
+
+        @Override
+        public synchronized boolean reserve(int count) {
+            if (available < count) {
+                return false;
+            }
+            available -= count;
+            return true;
+        }
+
+        @Override
+        public synchronized void release(int count) {
+            available += count;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] threadCounts = args.length == 0 ? new int[]{1, 4, 16, 64}
+                : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        System.out.printf("%-8s %7s %14s %10s %10s%n", "variant", "threads", "claims/s", "p99 ns", "p99.9 ns");
+        for (int threads : threadCounts) {
+            Share share = new Share("NYKM010325", "Equity", 1_000_000);
+            run("cas", threads, new Claim() {
+                @Override
+                public boolean reserve(int count) {
+                    return share.tryReserve(count);
+                }
+
+                @Override
+                public void release(int count) {
+                    share.release(count);
+                }
+            });
+            run("monitor", threads, new MonitorShare(1_000_000));
+        }
+    }
+
+    private static void run(String variant, int threads, Claim claim) throws InterruptedException {
+        measure(threads, claim, WARMUP_MS);
+        Result result = measure(threads, claim, MEASURE_MS);
+        System.out.printf("%-8s %7d %14.0f %10d %10d%n", variant, threads,
+                result.claims * 1000.0 / MEASURE_MS, result.percentile(0.99), result.percentile(0.999));
+    }
+
+    private static final class Result {
+        long claims;
+        long[] latencies;
+
+        long percentile(double p) {
+            return latencies.length == 0 ? 0 : latencies[(int) Math.min(latencies.length - 1, latencies.length * p)];
+        }
+    }
+
+    private static Result measure(int threads, Claim claim, long durationMs) throws InterruptedException {
+        long[][] samples = new long[threads][SAMPLES_PER_THREAD];
+        int[] sampled = new int[threads];
+        long[] counts = new long[threads];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        long[] end = new long[1];
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long claims = 0;
+                int n = 0;
+                while (System.nanoTime() < end[0]) {
+                    long before = System.nanoTime();
+                    if (claim.reserve(1)) {
+                        claims++;
+                    }
+                    long took = System.nanoTime() - before;
+                    claim.release(1);
+                    // Every 16th claim is timed, the buffer wraps once full
+                    if ((claims & 15) == 0) {
+                        samples[index][n++ & (SAMPLES_PER_THREAD - 1)] = took;
+                    }
+                }
+                counts[index] = claims;
+                sampled[index] = Math.min(n, SAMPLES_PER_THREAD);
+            });
+            workers[t].start();
+        }
+        end[0] = System.nanoTime() + durationMs * 1_000_000;
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        Result result = new Result();
+        int total = 0;
+        for (int t = 0; t < threads; t++) {
+            result.claims += counts[t];
+            total += sampled[t];
+        }
+        result.latencies = new long[total];
+        int at = 0;
+        for (int t = 0; t < threads; t++) {
+            System.arraycopy(samples[t], 0, result.latencies, at, sampled[t]);
+            at += sampled[t];
+        }
+        Arrays.sort(result.latencies);
+        return result;
+    }
+}
@@ -0,0 +1,172 @@
+package server;
+
+import ShareMarket.Holding;
+import ShareMarket.Result;
+import ShareMarket.ResultCode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent cross-market swap stress. BUYERS New York buyers all swap into
+ * one London share that only has room for CAPACITY of them, first through
+ * the two-phase reserve/commit swap, then through the older
+ * CHECK_SWAP_AVAILABILITY + EXECUTE_SWAP exchange, where a buyer whose
+ * execute fails after a positive check retries. Reports the success rate,
+ * the swaps that failed after being told the capacity was there, and the
+ * datagrams London handled per completed swap.
+ */
+public class SwapStressTest {
+    private static final int LONDON_PORT = 6201;
+    private static final int BUYERS = 300;
+    private static final int CAPACITY = 120;
+    private static final int LEGACY_ATTEMPTS = 3;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("dsms.audit", "off");
+        System.setProperty("dsms.heartbeat", "off");
+        System.setProperty("dsms.wal", "off");
+        ShareMarketServerImpl london = new ShareMarketServerImpl("London", LONDON_PORT);
+        ShareMarketServerImpl newYork = new ShareMarketServerImpl("NewYork", 6200);
+        UDPServerThread londonUdp = new UDPServerThread(LONDON_PORT, london, london.getShareDatabase());
+        londonUdp.setDaemon(true);
+        londonUdp.start();
+        newYork.addRemoteServer("London", LONDON_PORT);
+        Thread.sleep(200);
+
+        newYork.addShare("NYKM010325", "Equity", BUYERS);
+        london.addShare("LONM010325", "Equity", CAPACITY);
+        london.addShare("LONA010325", "Equity", CAPACITY);
+        for (int b = 0; b < BUYERS; b++) {
+            newYork.purchaseShare(buyer(b), "NYKM010325", "Equity", 1);
+        }
+
+        // Two-phase: every buyer swaps its NYKM010325 for LONM010325
+        long before = londonUdp.getProcessedRequests();
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        AtomicInteger other = new AtomicInteger();
+        runBuyers(b -> {
+            Result result = newYork.swapShares(buyer(b), "NYKM010325", "Equity", "LONM010325", "Equity");
+            if (Results.isSuccess(result)) {
+                succeeded.incrementAndGet();
+            } else if (result.code.value() == ResultCode._NOT_ENOUGH_AVAILABLE) {
+                refused.incrementAndGet();
+            } else {
+                other.incrementAndGet();
+            }
+        });
+        long twoPhaseDatagrams = londonUdp.getProcessedRequests() - before;
+
+        int londonHeld = 0;
+        int newYorkHeld = 0;
+        for (int b = 0; b < BUYERS; b++) {
+            londonHeld += held(london, buyer(b), "LONM010325");
+            newYorkHeld += held(newYork, buyer(b), "NYKM010325");
+        }
+        report("two-phase", succeeded.get(), refused.get() + other.get(), other.get(), 0, twoPhaseDatagrams);
+        check(succeeded.get() == CAPACITY && other.get() == 0, "two-phase swaps did not fill the capacity exactly");
+        check(londonHeld == CAPACITY && newYorkHeld == BUYERS - CAPACITY, "shares were lost or duplicated: London " +
+                londonHeld + ", New York " + newYorkHeld);
+        check(available(london, "LONM010325") == 0 && available(newYork, "NYKM010325") == CAPACITY,
+                "capacity does not add up");
+
+        // Legacy: check, then execute as a separate datagram, retrying when the execute fails
+        UDPClient client = new UDPClient();
+        before = londonUdp.getProcessedRequests();
+        AtomicInteger legacySucceeded = new AtomicInteger();
+        AtomicInteger legacyFailed = new AtomicInteger();
+        AtomicInteger failedAfterCheck = new AtomicInteger();
+        AtomicInteger retries = new AtomicInteger();
+        runBuyers(b -> {
+            for (int attempt = 1; attempt <= LEGACY_ATTEMPTS; attempt++) {
+                try {
+                    WireProtocol.Reply check = client.call("localhost", LONDON_PORT,
+                            WireProtocol.Request.checkSwapAvailability("LONA010325", "Equity", 1), 2000);
+                    if (!check.isOk()) {
+                        break;
+                    }
+                    WireProtocol.Reply execute = client.call("localhost", LONDON_PORT, WireProtocol.Request.executeSwap(
+                            buyer(b), "NYKM010325", "Equity", "LONA010325", "Equity", 1), 2000);
+                    if (execute.isOk()) {
+                        legacySucceeded.incrementAndGet();
+                        return;
+                    }
+                    failedAfterCheck.incrementAndGet();
+                    if (attempt < LEGACY_ATTEMPTS) {
+                        retries.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    break;
+                }
+            }
+            legacyFailed.incrementAndGet();
+        });
+        long legacyDatagrams = londonUdp.getProcessedRequests() - before;
+        report("legacy", legacySucceeded.get(), legacyFailed.get(), failedAfterCheck.get(), retries.get(), legacyDatagrams);
+        check(legacySucceeded.get() <= CAPACITY, "the legacy exchange oversold the share");
+
+        System.out.println("SwapStressTest: OK");
+        System.exit(0);
+    }
+
+    private interface BuyerTask {
+        void run(int buyer);
+    }
+
+    private static void runBuyers(BuyerTask task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int b = 0; b < BUYERS; b++) {
+            int buyer = b;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                task.run(buyer);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private static void report(String variant, int succeeded, int failed, int failedAfterCheck, int retries,
+                               long datagrams) {
+        System.out.printf("%-9s succeeded %3d of %d (%.0f%%), failed %3d, failed after a positive check %3d, " +
+                        "retries %3d, London datagrams %4d (%.2f per swap)%n", variant, succeeded, BUYERS,
+                100.0 * succeeded / BUYERS, failed, failedAfterCheck, retries, datagrams,
+                succeeded == 0 ? 0.0 : (double) datagrams / succeeded);
+    }
+
+    private static String buyer(int index) {
+        return String.format("NYKB%04d", index);
+    }
+
+    private static int held(ShareMarketServerImpl market, String buyerID, String shareID) {
+        int quantity = 0;
+        for (Holding holding : market.getLocalHoldings(buyerID).holdings) {
+            if (holding.shareID.equals(shareID)) {
+                quantity += holding.quantity;
+            }
+        }
+        return quantity;
+    }
+
+    private static int available(ShareMarketServerImpl market, String shareID) {
+        return market.getShareDatabase().get("Equity").get(shareID).getAvailableCapacity();
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException("FAILED: " + message);
+        }
+    }
+}
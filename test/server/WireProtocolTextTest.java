@@ -0,0 +1,68 @@
+package server;
+
+/**
+ * Round-trips every request and reply through the legacy text encoding
+ * used with -Ddsms.udp.protocol=text. Run with assertions off or on; a
+ * mismatch fails with an exception either way.
+ */
+public class WireProtocolTextTest {
+
+    public static void main(String[] args) {
+        int checked = 0;
+        for (WireProtocol.Request request : requests()) {
+            WireProtocol.Request parsed = WireProtocol.Request.fromText(request.toText());
+            check(parsed != null, "request " + request.toText() + " does not parse");
+            check(parsed.getOpcode() == request.getOpcode(), "opcode of " + request.toText());
+            for (int i = 0; i < request.getOpcode().getFieldCount(); i++) {
+                check(request.getField(i).equals(parsed.getField(i)), "field " + i + " of " + request.toText());
+            }
+            check(parsed.getCount() == request.getCount(), "count of " + request.toText());
+            checked++;
+
+            for (WireProtocol.Status status : new WireProtocol.Status[]{WireProtocol.Status.OK,
+                    WireProtocol.Status.NOT_AVAILABLE, WireProtocol.Status.FAILED}) {
+                WireProtocol.Reply reply = new WireProtocol.Reply(status, "London");
+                WireProtocol.Reply back = WireProtocol.Reply.fromText(request.getOpcode(), reply.toText(request.getOpcode()));
+                check(back.getStatus() == status, request.getOpcode() + " " + status + " reply parsed as " + back.getStatus());
+                check(back.getBody().equals("London"), request.getOpcode() + " " + status + " reply body " + back.getBody());
+                checked++;
+            }
+        }
+
+        WireProtocol.Reply page = new WireProtocol.Reply(WireProtocol.Status.OK, "NYKM100325 5\nNYKA100325 7", "NYKA100325");
+        WireProtocol.Reply back = WireProtocol.Reply.fromText(WireProtocol.Opcode.LIST_AVAILABILITY,
+                page.toText(WireProtocol.Opcode.LIST_AVAILABILITY));
+        check(back.isOk() && back.getBody().equals(page.getBody()), "listing page body " + back.getBody());
+        check(back.getContinuation().equals("NYKA100325"), "listing continuation " + back.getContinuation());
+        checked++;
+
+        WireProtocol.Reply invalid = new WireProtocol.Reply(WireProtocol.Status.INVALID_REQUEST, "");
+        check(WireProtocol.Reply.fromText(WireProtocol.Opcode.HEARTBEAT, invalid.toText(WireProtocol.Opcode.HEARTBEAT))
+                .getStatus() == WireProtocol.Status.INVALID_REQUEST, "invalid request reply");
+        checked++;
+
+        System.out.println("WireProtocolTextTest: " + checked + " round trips OK");
+    }
+
+    // One request of every opcode
+    private static WireProtocol.Request[] requests() {
+        WireProtocol.Request[] requests = {
+                WireProtocol.Request.listAvailability("Equity", "NYKM100325"),
+                WireProtocol.Request.checkSwapAvailability("LONM100325", "Equity", 5),
+                WireProtocol.Request.executeSwap("NYKB1111", "NYKM100325", "Equity", "LONM100325", "Equity", 5),
+                WireProtocol.Request.reserveSwap("NYKB1111", "LONM100325", "Equity", 5),
+                WireProtocol.Request.commitSwap(1234567L),
+                WireProtocol.Request.abortSwap(1234567L),
+                WireProtocol.Request.heartbeat("NewYork"),
+                WireProtocol.Request.swapStatus(1234567L)
+        };
+        check(requests.length == WireProtocol.Opcode.values().length, "a request is missing for a new opcode");
+        return requests;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException("FAILED: " + message);
+        }
+    }
+}